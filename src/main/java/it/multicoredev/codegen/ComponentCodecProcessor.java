@@ -0,0 +1,283 @@
+package it.multicoredev.codegen;
+
+import javax.annotation.processing.*;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.*;
+
+/**
+ * BSD 3-Clause License
+ * <p>
+ * Copyright (c) 2022, Lorenzo Magni
+ * All rights reserved.
+ * <p>
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * <p>
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * <p>
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * <p>
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+// Generates a ComponentCodec for every class annotated with @ComponentType and lists it as a ComponentCodec service.
+// The codecs read and write the fields directly, so the fields must not be private.
+@SupportedAnnotationTypes(ComponentCodecProcessor.ANNOTATION)
+@SupportedSourceVersion(SourceVersion.RELEASE_17)
+public class ComponentCodecProcessor extends AbstractProcessor {
+    static final String ANNOTATION = "it.multicoredev.ui.components.codec.ComponentType";
+    private static final String CODEC_PACKAGE = "it.multicoredev.ui.components.codec";
+    private static final String SERVICES = "META-INF/services/" + CODEC_PACKAGE + ".ComponentCodec";
+
+    // Field type -> ComponentWriter/ComponentReader method suffix
+    private static final Map<String, String> TYPES = Map.of(
+            "int", "Int",
+            "float", "Float",
+            "boolean", "Boolean",
+            "java.lang.String", "String",
+            "org.joml.Vector2f", "Vector2f",
+            "org.joml.Vector3f", "Vector3f",
+            "org.joml.Vector4f", "Vector4f",
+            "it.multicoredev.ui.components.Sprite", "Sprite"
+    );
+
+    private final Map<Integer, String> ids = new TreeMap<>();
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment env) {
+        TypeElement annotation = processingEnv.getElementUtils().getTypeElement(ANNOTATION);
+        if (annotation == null) return false;
+
+        for (TypeElement type : ElementFilter.typesIn(env.getElementsAnnotatedWith(annotation))) {
+            Integer id = readId(type, annotation);
+            if (id == null) continue;
+
+            String name = type.getQualifiedName().toString();
+            if (id < 0 || id > Short.MAX_VALUE) {
+                error(type, "@ComponentType id must be between 0 and " + Short.MAX_VALUE);
+                continue;
+            }
+
+            String previous = ids.putIfAbsent(id, name + "Codec");
+            if (previous != null) {
+                error(type, "@ComponentType id " + id + " is already used by " + previous);
+                continue;
+            }
+
+            writeCodec(type, id);
+        }
+
+        if (env.processingOver() && !ids.isEmpty()) writeServices();
+
+        return true;
+    }
+
+    private Integer readId(TypeElement type, TypeElement annotation) {
+        for (AnnotationMirror mirror : type.getAnnotationMirrors()) {
+            if (!mirror.getAnnotationType().asElement().equals(annotation)) continue;
+
+            for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : mirror.getElementValues().entrySet()) {
+                if (entry.getKey().getSimpleName().contentEquals("id")) return (Integer) entry.getValue().getValue();
+            }
+        }
+
+        return null;
+    }
+
+    private void writeCodec(TypeElement type, int id) {
+        String pkg = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+        String simpleName = type.getSimpleName().toString();
+        String codecName = simpleName + "Codec";
+
+        List<VariableElement> fields = new ArrayList<>();
+        for (TypeElement t = type; t != null && !t.getQualifiedName().contentEquals("it.multicoredev.ui.components.Component"); t = superclass(t)) {
+            List<VariableElement> declared = new ArrayList<>();
+
+            for (VariableElement field : ElementFilter.fieldsIn(t.getEnclosedElements())) {
+                Set<Modifier> modifiers = field.getModifiers();
+                if (modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.TRANSIENT)) continue;
+
+                if (modifiers.contains(Modifier.PRIVATE) || modifiers.contains(Modifier.FINAL)) {
+                    error(field, "Fields of a @ComponentType must not be private or final, make it transient to skip it");
+                    return;
+                }
+                if (!TYPES.containsKey(typeName(field.asType()))) {
+                    error(field, "Unsupported field type for a @ComponentType: " + field.asType());
+                    return;
+                }
+
+                declared.add(field);
+            }
+
+            // Superclass fields first, in declaration order
+            fields.addAll(0, declared);
+        }
+
+        if (fields.size() > 32) {
+            error(type, "A @ComponentType can have at most 32 saved fields");
+            return;
+        }
+
+        try (PrintWriter out = new PrintWriter(processingEnv.getFiler().createSourceFile(pkg + "." + codecName, type).openWriter())) {
+            out.println("package " + pkg + ";");
+            out.println();
+            out.println("import " + CODEC_PACKAGE + ".ComponentCodec;");
+            out.println("import " + CODEC_PACKAGE + ".ComponentReader;");
+            out.println("import " + CODEC_PACKAGE + ".ComponentWriter;");
+            out.println();
+            out.println("// Generated by " + getClass().getSimpleName() + " from " + simpleName + ", do not edit");
+            out.println("public final class " + codecName + " implements ComponentCodec<" + simpleName + "> {");
+            out.print("    private static final String[] FIELDS = {");
+            for (int i = 0; i < fields.size(); i++) out.print((i > 0 ? ", " : "") + "\"" + fields.get(i).getSimpleName() + "\"");
+            out.println("};");
+            out.println();
+            out.println("    @Override");
+            out.println("    public int id() {");
+            out.println("        return " + id + ";");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public Class<" + simpleName + "> type() {");
+            out.println("        return " + simpleName + ".class;");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public void write(" + simpleName + " component, ComponentWriter out) {");
+            for (VariableElement field : fields) {
+                String name = field.getSimpleName().toString();
+                out.println("        out.write" + TYPES.get(typeName(field.asType())) + "(\"" + name + "\", component." + name + ");");
+            }
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public " + simpleName + " read(ComponentReader in) {");
+            out.println("        " + simpleName + " component = new " + simpleName + "();");
+            for (VariableElement field : fields) {
+                String name = field.getSimpleName().toString();
+                out.println("        if (in.has(\"" + name + "\")) component." + name + " = in.read" + TYPES.get(typeName(field.asType())) + "(\"" + name + "\");");
+            }
+            out.println("        return component;");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public " + simpleName + " copy(" + simpleName + " template) {");
+            out.println("        return copy(template, new " + simpleName + "());");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public " + simpleName + " copy(" + simpleName + " from, " + simpleName + " to) {");
+            for (VariableElement field : fields) {
+                String name = field.getSimpleName().toString();
+                out.println("        to." + name + " = from." + name + ";");
+            }
+            out.println("        return to;");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public int overrides(" + simpleName + " component, " + simpleName + " template) {");
+            out.println("        int mask = 0;");
+            for (int i = 0; i < fields.size(); i++) {
+                VariableElement field = fields.get(i);
+                String name = field.getSimpleName().toString();
+                // Objects are compared by value, an instance that was given an equal copy does not override anything
+                String differs = field.asType().getKind().isPrimitive()
+                        ? "component." + name + " != template." + name
+                        : "!java.util.Objects.equals(component." + name + ", template." + name + ")";
+                out.println("        if (" + differs + ") mask |= " + (1 << i) + ";");
+            }
+            out.println("        return mask;");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public void writeOverrides(" + simpleName + " component, " + simpleName + " template, ComponentWriter out) {");
+            out.println("        int mask = overrides(component, template);");
+            out.println("        out.writeMask(FIELDS, mask);");
+            for (int i = 0; i < fields.size(); i++) {
+                VariableElement field = fields.get(i);
+                String name = field.getSimpleName().toString();
+                out.println("        if ((mask & " + (1 << i) + ") != 0) out.write" + TYPES.get(typeName(field.asType())) + "(\"" + name + "\", component." + name + ");");
+            }
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public void readOverrides(" + simpleName + " component, ComponentReader in) {");
+            out.println("        int mask = in.readMask(FIELDS);");
+            for (int i = 0; i < fields.size(); i++) {
+                VariableElement field = fields.get(i);
+                String name = field.getSimpleName().toString();
+                out.println("        if ((mask & " + (1 << i) + ") != 0) component." + name + " = in.read" + TYPES.get(typeName(field.asType())) + "(\"" + name + "\");");
+            }
+            out.println("    }");
+            out.println("}");
+        } catch (IOException e) {
+            error(type, "Cannot write " + codecName + ": " + e.getMessage());
+        }
+    }
+
+    // An incremental build only sees the components it recompiles, the codecs listed by the previous build are kept
+    // as long as they still exist. Ids that clash with one of those are reported by ComponentCodecs when it loads them.
+    private void writeServices() {
+        Filer filer = processingEnv.getFiler();
+        Set<String> codecs = new TreeSet<>(ids.values());
+
+        try {
+            FileObject existing = filer.getResource(StandardLocation.CLASS_OUTPUT, "", SERVICES);
+            try (BufferedReader in = new BufferedReader(existing.openReader(true))) {
+                for (String line = in.readLine(); line != null; line = in.readLine()) {
+                    String codec = line.trim();
+                    if (!codec.isEmpty() && processingEnv.getElementUtils().getTypeElement(codec) != null) codecs.add(codec);
+                }
+            }
+        } catch (IOException e) {
+            // First build, there is nothing to merge with
+        }
+
+        try (PrintWriter out = new PrintWriter(filer.createResource(StandardLocation.CLASS_OUTPUT, "", SERVICES).openWriter())) {
+            out.println("# Generated by " + getClass().getSimpleName() + ", do not edit");
+            codecs.forEach(out::println);
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Cannot write " + SERVICES + ": " + e.getMessage());
+        }
+    }
+
+    private TypeElement superclass(TypeElement type) {
+        TypeMirror superclass = type.getSuperclass();
+        if (superclass.getKind() != TypeKind.DECLARED) return null;
+
+        return (TypeElement) processingEnv.getTypeUtils().asElement(superclass);
+    }
+
+    private String typeName(TypeMirror type) {
+        if (type.getKind().isPrimitive()) return type.toString();
+        return processingEnv.getTypeUtils().erasure(type).toString();
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}
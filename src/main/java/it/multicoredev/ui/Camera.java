@@ -36,6 +36,9 @@ import org.joml.Vector3f;
  * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 public class Camera {
+    public static final float VIEWPORT_WIDTH = 32.0f * 40.0f;
+    public static final float VIEWPORT_HEIGHT = 32.0f * 21.0f;
+
     private Matrix4f projection;
     private Matrix4f view;
     private Matrix4f inverseProjection;
@@ -57,7 +60,7 @@ public class Camera {
 
     public void adjustProjection() {
         projection.identity();
-        projection.ortho(0.0f, 32.0f * 40.0f, 0.0f, 32.0f * 21.0f, 0.0f, 100.0f);
+        projection.ortho(0.0f, VIEWPORT_WIDTH, 0.0f, VIEWPORT_HEIGHT, 0.0f, 100.0f);
         projection.invert(inverseProjection);
     }
 
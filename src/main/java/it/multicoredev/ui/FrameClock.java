@@ -0,0 +1,109 @@
+package it.multicoredev.ui;
+
+import imgui.ImGui;
+import it.multicoredev.utils.FrameTimeHistogram;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * BSD 3-Clause License
+ * <p>
+ * Copyright (c) 2022, Lorenzo Magni
+ * All rights reserved.
+ * <p>
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * <p>
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * <p>
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * <p>
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+// Frame timing on System.nanoTime, a float of glfwGetTime loses precision after hours of uptime.
+// The optional limiter sleeps until shortly before the frame deadline and spins the rest, sleeps overshoot by up to a couple of ms.
+public class FrameClock {
+    private static final long SPIN_NANOS = 2_000_000;
+
+    private final long start = System.nanoTime();
+    private long frameStart = start;
+    private long nextFrame = 0;
+    private long targetNanos = 0;
+    private double delta = 0;
+
+    private final FrameTimeHistogram histogram = new FrameTimeHistogram();
+
+    // Starts timing the first frame, without recording the time spent before it
+    public void start() {
+        frameStart = System.nanoTime();
+        nextFrame = frameStart + targetNanos;
+    }
+
+    // Ends the frame: waits for the limiter if set and returns the seconds since the previous call
+    public double tick() {
+        if (targetNanos > 0) waitUntil(nextFrame);
+
+        long now = System.nanoTime();
+        long frameNanos = now - frameStart;
+        frameStart = now;
+        histogram.record(frameNanos);
+
+        // Stay on the schedule of the deadlines, unless the frame was late enough to skip one
+        if (targetNanos > 0) nextFrame = now - nextFrame > targetNanos ? now + targetNanos : nextFrame + targetNanos;
+
+        delta = frameNanos / 1e9;
+        return delta;
+    }
+
+    private static void waitUntil(long deadline) {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > SPIN_NANOS) LockSupport.parkNanos(remaining - SPIN_NANOS);
+        while (deadline - System.nanoTime() > 0) Thread.onSpinWait();
+    }
+
+    // Frames per second the limiter paces to, 0 leaves it to vsync
+    public void setTargetFps(int fps) {
+        targetNanos = fps > 0 ? 1_000_000_000L / fps : 0;
+        nextFrame = System.nanoTime() + targetNanos;
+    }
+
+    public double getDelta() {
+        return delta;
+    }
+
+    // Seconds since the clock was created
+    public double getTime() {
+        return (System.nanoTime() - start) / 1e9;
+    }
+
+    public FrameTimeHistogram getHistogram() {
+        return histogram;
+    }
+
+    public void imgui() {
+        ImGui.begin("Frame times");
+
+        ImGui.text(String.format("Mean: %.2f ms (%.0f fps)", histogram.getMean(), histogram.getMean() > 0 ? 1000 / histogram.getMean() : 0));
+        ImGui.text(String.format("p50: %.1f ms  p95: %.1f ms  p99: %.1f ms", histogram.percentile(0.5), histogram.percentile(0.95), histogram.percentile(0.99)));
+        ImGui.text(String.format("Max: %.2f ms over %d frames", histogram.getMax(), histogram.getCount()));
+        if (ImGui.button("Reset")) histogram.reset();
+
+        ImGui.end();
+    }
+}
@@ -3,14 +3,24 @@ package it.multicoredev.ui;
 import com.google.gson.*;
 import com.google.gson.annotations.JsonAdapter;
 import com.google.gson.annotations.SerializedName;
-import com.google.gson.reflect.TypeToken;
 import it.multicoredev.ui.components.Component;
+import it.multicoredev.ui.components.codec.ComponentCodec;
+import it.multicoredev.ui.components.codec.ComponentCodecs;
+import it.multicoredev.ui.components.codec.JsonComponentReader;
+import it.multicoredev.ui.components.codec.JsonComponentWriter;
+import it.multicoredev.ui.ecs.Chunk;
+import it.multicoredev.ui.ecs.ComponentTypes;
+import it.multicoredev.ui.scenes.Scene;
+import org.joml.Vector2f;
 
 import java.lang.reflect.Type;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.List;
-
-import static it.multicoredev.App.LOGGER;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * BSD 3-Clause License
@@ -45,21 +55,38 @@ import static it.multicoredev.App.LOGGER;
  */
 @JsonAdapter(GameObject.JsonAdapter.class)
 public class GameObject {
-    private static int ID_COUNTER = 0;
+    private static final AtomicInteger ID_COUNTER = new AtomicInteger();
     private int uid = -1;
 
-    private final String name;
+    private String name;
     public Transform transform;
     @SerializedName("z_index")
-    private final int zIndex;
+    private int zIndex;
     private final List<Component> components = new ArrayList<>();
+    // Changes have to go through the GameObject so that the slots, the scene and the storage follow
+    private final transient List<Component> componentsView = Collections.unmodifiableList(components);
+    // Component by type id, including the parent types, and the bits of the ids present
+    private transient Component[] slots = new Component[8];
+    private final transient BitSet mask = new BitSet();
+    private transient Prefab prefab = null;
+    private transient Scene scene = null;
+    private transient long handle = GameObjectPool.NO_HANDLE;
+    // Transform before the last fixed simulation step, for render interpolation
+    private transient Transform previousTransform = null;
+    // Leaf of the object in the bounds tree of its scene
+    private transient int treeProxy = -1;
+    // Position in the object list of its scene, the journal records edits by it
+    private transient int sceneIndex = -1;
+    // Where the object lives in the scene EntityStorage, if the scene has one
+    private transient Chunk chunk = null;
+    private transient int row = -1;
 
     public GameObject(String name, Transform transform, int zIndex) {
         this.name = name;
         this.transform = transform;
         this.zIndex = zIndex;
 
-        this.uid = ID_COUNTER++;
+        this.uid = ID_COUNTER.getAndIncrement();
     }
 
     public GameObject(String name, Transform transform) {
@@ -75,31 +102,82 @@ public class GameObject {
     }
 
     public List<Component> getComponents() {
-        return components;
+        return componentsView;
     }
 
     public <T extends Component> T getComponent(Class<T> component) {
-        for (Component c : components) {
-            if (component.isAssignableFrom(c.getClass())) {
-                try {
-                    return component.cast(c);
-                } catch (ClassCastException e) {
-                    LOGGER.error(e.getMessage(), e);
-                }
-            }
-        }
+        int id = ComponentTypes.id(component);
+        return id < slots.length ? component.cast(slots[id]) : null;
+    }
+
+    public boolean hasComponent(Class<? extends Component> component) {
+        return mask.get(ComponentTypes.id(component));
+    }
 
-        return null;
+    public BitSet getComponentMask() {
+        return mask;
     }
 
     public <T extends Component> void removeComponent(Class<T> component) {
-        components.removeIf(c -> component.isAssignableFrom(c.getClass()));
+        if (!hasComponent(component)) return;
+
+        for (int i = components.size() - 1; i >= 0; i--) {
+            Component c = components.get(i);
+            if (!component.isAssignableFrom(c.getClass())) continue;
+
+            components.remove(i);
+            detachPrefab(i);
+            if (scene != null) scene.componentRemoved(c);
+        }
+        reindex();
+        storageChanged();
     }
 
     public void addComponent(Component component) {
         component.generateId();
         components.add(component);
         component.setGameObject(this);
+        index(component);
+        if (scene != null) scene.componentAdded(component);
+        storageChanged();
+    }
+
+    public void setComponent(int index, Component component) {
+        component.generateId();
+        Component old = components.set(index, component);
+        if (old.getClass() != component.getClass()) detachPrefab(index);
+        component.setGameObject(this);
+        reindex();
+        if (scene != null) {
+            scene.componentRemoved(old);
+            scene.componentAdded(component);
+        }
+        storageChanged();
+    }
+
+    // Instances are saved as overrides of the prefab components, once one of them is gone the object is saved in full
+    private void detachPrefab(int index) {
+        if (prefab != null && index < prefab.size()) prefab = null;
+    }
+
+    // The first component assignable to a type owns its slot, like the scan over the list used to return
+    private void index(Component component) {
+        for (int id : ComponentTypes.ancestors(component.getClass())) {
+            if (id >= slots.length) slots = Arrays.copyOf(slots, Math.max(id + 1, slots.length * 2));
+            if (slots[id] == null) slots[id] = component;
+            mask.set(id);
+        }
+    }
+
+    private void reindex() {
+        Arrays.fill(slots, null);
+        mask.clear();
+        components.forEach(this::index);
+    }
+
+    // The component set decides the archetype, so the storage has to move the object
+    private void storageChanged() {
+        if (chunk != null) chunk.storage().pull(this);
     }
 
     public void update(float dt) {
@@ -110,6 +188,10 @@ public class GameObject {
         components.forEach(Component::start);
     }
 
+    public void destroy() {
+        components.forEach(Component::destroy);
+    }
+
     public String getName() {
         return name;
     }
@@ -126,29 +208,189 @@ public class GameObject {
         return uid;
     }
 
+    // Reinitializes a pooled object, it gets a new uid like a new object would
+    void renew(String name, Transform transform, int zIndex) {
+        this.name = name;
+        this.transform = transform;
+        this.zIndex = zIndex;
+        this.uid = ID_COUNTER.getAndIncrement();
+    }
+
+    // Drops the components of a released object, they have already been destroyed
+    void clear() {
+        components.clear();
+        reindex();
+        prefab = null;
+        previousTransform = null;
+        scene = null;
+        chunk = null;
+        row = -1;
+    }
+
+    public void savePreviousTransform() {
+        if (previousTransform == null) previousTransform = transform.copy();
+        else transform.copyTo(previousTransform);
+    }
+
+    public Transform getPreviousTransform() {
+        return previousTransform;
+    }
+
+    // Handle from the GameObjectPool, NO_HANDLE for objects created directly
+    public long getHandle() {
+        return handle;
+    }
+
+    void setHandle(long handle) {
+        this.handle = handle;
+    }
+
+    public int getTreeProxy() {
+        return treeProxy;
+    }
+
+    public void setTreeProxy(int treeProxy) {
+        this.treeProxy = treeProxy;
+    }
+
+    public int getSceneIndex() {
+        return sceneIndex;
+    }
+
+    public void setSceneIndex(int sceneIndex) {
+        this.sceneIndex = sceneIndex;
+    }
+
+    public Scene getScene() {
+        return scene;
+    }
+
+    // Set by the scene when the object is added to or removed from it
+    public void setScene(Scene scene) {
+        this.scene = scene;
+    }
+
+    public Chunk getChunk() {
+        return chunk;
+    }
+
+    public int getRow() {
+        return row;
+    }
+
+    public void setStorage(Chunk chunk, int row) {
+        this.chunk = chunk;
+        this.row = row;
+    }
+
+    public Prefab getPrefab() {
+        return prefab;
+    }
+
+    void setPrefab(Prefab prefab) {
+        this.prefab = prefab;
+    }
+
     public static void init(int maxId) {
-        ID_COUNTER = maxId;
+        ID_COUNTER.set(maxId);
     }
 
-    public static class JsonAdapter implements JsonDeserializer<GameObject> {
+    // Written by hand so neither saving nor loading goes through reflection, the components use their codecs
+    public static class JsonAdapter implements JsonDeserializer<GameObject>, JsonSerializer<GameObject> {
 
         @Override
         public GameObject deserialize(JsonElement json, Type t, JsonDeserializationContext ctx) throws JsonParseException {
             if (!json.isJsonObject()) throw new JsonParseException("Invalid or malformed GameObject: not an object");
             JsonObject obj = json.getAsJsonObject();
 
+            if (obj.has("prefab")) return deserializeInstance(obj, ctx);
+
             if (!obj.has("name") || !obj.has("transform") || !obj.has("z_index") || !obj.has("components"))
                 throw new JsonParseException("Invalid or malformed GameObject: missing name or transform, z_index or components");
 
             String name = obj.get("name").getAsString();
-            Transform transform = ctx.deserialize(obj.get("transform"), Transform.class);
+            JsonObject transform = obj.getAsJsonObject("transform");
             int zIndex = obj.get("z_index").getAsInt();
-            List<Component> components = ctx.deserialize(obj.get("components"), new TypeToken<List<Component>>() {}.getType());
 
-            GameObject go = new GameObject(name, transform, zIndex);
-            components.forEach(go::addComponent);
+            GameObject go = new GameObject(name, new Transform(vector(transform.getAsJsonObject("position")), vector(transform.getAsJsonObject("scale"))), zIndex);
+            for (JsonElement component : obj.getAsJsonArray("components")) {
+                go.addComponent(ctx.deserialize(component, Component.class));
+            }
+
+            return go;
+        }
+
+        // Prefab instances only store the prefab id, their transform and the fields that differ from the prefab
+        private GameObject deserializeInstance(JsonObject obj, JsonDeserializationContext ctx) {
+            String id = obj.get("prefab").getAsString();
+            Prefab prefab = Prefabs.get(id);
+            if (prefab == null) throw new JsonParseException("Unknown prefab: " + id);
+
+            JsonObject transform = obj.getAsJsonObject("transform");
+            int zIndex = obj.has("z_index") ? obj.get("z_index").getAsInt() : 0;
+            GameObject go = prefab.instantiate(new Transform(vector(transform.getAsJsonObject("position")), vector(transform.getAsJsonObject("scale"))), zIndex);
+
+            if (obj.has("overrides")) {
+                for (Map.Entry<String, JsonElement> entry : obj.getAsJsonObject("overrides").entrySet()) {
+                    int index = Integer.parseInt(entry.getKey());
+                    ComponentCodecs.readOverrides(prefab.getCodec(index), go.components.get(index), new JsonComponentReader(entry.getValue().getAsJsonObject()));
+                }
+            }
+
+            if (obj.has("components")) {
+                for (JsonElement component : obj.getAsJsonArray("components")) {
+                    go.addComponent(ctx.deserialize(component, Component.class));
+                }
+            }
 
             return go;
         }
+
+        @Override
+        public JsonElement serialize(GameObject go, Type t, JsonSerializationContext ctx) {
+            JsonObject transform = new JsonObject();
+            transform.add("position", vector(go.transform.position));
+            transform.add("scale", vector(go.transform.scale));
+
+            JsonObject json = new JsonObject();
+            if (go.prefab != null) json.addProperty("prefab", go.prefab.getId());
+            else json.addProperty("name", go.name);
+            json.add("transform", transform);
+            json.addProperty("z_index", go.zIndex);
+
+            int first = 0;
+            if (go.prefab != null) {
+                first = go.prefab.size();
+
+                JsonObject overrides = new JsonObject();
+                for (int i = 0; i < first; i++) {
+                    ComponentCodec<?> codec = go.prefab.getCodec(i);
+                    if (ComponentCodecs.overrides(codec, go.components.get(i), go.prefab.getTemplate(i)) == 0) continue;
+
+                    JsonObject data = new JsonObject();
+                    ComponentCodecs.writeOverrides(codec, go.components.get(i), go.prefab.getTemplate(i), new JsonComponentWriter(data));
+                    overrides.add(String.valueOf(i), data);
+                }
+
+                if (overrides.size() > 0) json.add("overrides", overrides);
+            }
+
+            JsonArray components = new JsonArray();
+            for (int i = first; i < go.components.size(); i++) components.add(ctx.serialize(go.components.get(i), Component.class));
+            if (go.prefab == null || components.size() > 0) json.add("components", components);
+
+            return json;
+        }
+
+        private static Vector2f vector(JsonObject obj) {
+            return new Vector2f(obj.get("x").getAsFloat(), obj.get("y").getAsFloat());
+        }
+
+        private static JsonObject vector(Vector2f vector) {
+            JsonObject obj = new JsonObject();
+            obj.addProperty("x", vector.x);
+            obj.addProperty("y", vector.y);
+            return obj;
+        }
     }
 }
@@ -0,0 +1,108 @@
+package it.multicoredev.ui;
+
+import it.multicoredev.ui.components.Component;
+import it.multicoredev.ui.components.ComponentPool;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * BSD 3-Clause License
+ * <p>
+ * Copyright (c) 2022, Lorenzo Magni
+ * All rights reserved.
+ * <p>
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * <p>
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * <p>
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * <p>
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+// Recycled GameObjects addressed by 64 bit handles: the slot in the low half and its generation in the high half.
+// Releasing an object bumps the generation of its slot, so handles kept by anyone else stop resolving.
+public class GameObjectPool {
+    public static final long NO_HANDLE = 0;
+    private static final int MAX_POOLED = 4096;
+
+    private static GameObject[] objects = new GameObject[1024];
+    private static int[] generations = new int[1024];
+    private static int[] freeSlots = new int[1024];
+    private static int freeCount = 0;
+    private static int slotCount = 0;
+
+    private static final ArrayDeque<GameObject> pooled = new ArrayDeque<>();
+
+    public static synchronized GameObject obtain(String name, Transform transform, int zIndex) {
+        GameObject obj = pooled.poll();
+        if (obj == null) obj = new GameObject(name, transform, zIndex);
+        else obj.renew(name, transform, zIndex);
+
+        int slot = freeCount > 0 ? freeSlots[--freeCount] : newSlot();
+        objects[slot] = obj;
+        obj.setHandle(((long) generations[slot] << 32) | slot);
+
+        return obj;
+    }
+
+    // Called by the scene once the object is removed and destroyed, objects that did not come from the pool are ignored
+    public static synchronized void release(GameObject obj) {
+        long handle = obj.getHandle();
+        if (get(handle) != obj) return;
+
+        int slot = (int) handle;
+        objects[slot] = null;
+        // Generation 0 is never used, so NO_HANDLE never resolves
+        if (++generations[slot] == 0) generations[slot] = 1;
+        freeSlots[freeCount++] = slot;
+        obj.setHandle(NO_HANDLE);
+
+        for (Component component : obj.getComponents()) ComponentPool.release(component);
+        obj.clear();
+
+        if (pooled.size() < MAX_POOLED) pooled.push(obj);
+    }
+
+    // Null if the object was released since the handle was taken
+    public static synchronized GameObject get(long handle) {
+        int slot = (int) handle;
+        if (slot < 0 || slot >= slotCount || generations[slot] != (int) (handle >>> 32)) return null;
+
+        return objects[slot];
+    }
+
+    // Whether a reference taken together with the handle still points to the same object. Objects created
+    // without the pool have no handle and are never recycled
+    public static boolean isAlive(GameObject obj, long handle) {
+        return handle == NO_HANDLE || get(handle) == obj;
+    }
+
+    private static int newSlot() {
+        if (slotCount == objects.length) {
+            objects = Arrays.copyOf(objects, slotCount * 2);
+            generations = Arrays.copyOf(generations, slotCount * 2);
+            freeSlots = Arrays.copyOf(freeSlots, slotCount * 2);
+        }
+
+        generations[slotCount] = 1;
+        return slotCount++;
+    }
+}
@@ -48,6 +48,8 @@ import static org.lwjgl.glfw.GLFW.*;
 public class ImGuiLayer {
     private final long windowId;
     private final long[] mouseCursors = new long[ImGuiMouseCursor.COUNT];
+    // Reused by the mouse button callback
+    private final boolean[] mouseDown = new boolean[5];
     private final ImGuiImplGl3 imGuiGl3 = new ImGuiImplGl3();
 
     public ImGuiLayer(long windowId) {
@@ -123,8 +125,6 @@ public class ImGuiLayer {
         });
 
         glfwSetMouseButtonCallback(windowId, (w, button, action, mods) -> {
-            final boolean[] mouseDown = new boolean[5];
-
             mouseDown[0] = button == GLFW_MOUSE_BUTTON_1 && action != GLFW_RELEASE;
             mouseDown[1] = button == GLFW_MOUSE_BUTTON_2 && action != GLFW_RELEASE;
             mouseDown[2] = button == GLFW_MOUSE_BUTTON_3 && action != GLFW_RELEASE;
@@ -143,6 +143,8 @@ public class ImGuiLayer {
         glfwSetScrollCallback(windowId, (w, xOffset, yOffset) -> {
             io.setMouseWheelH(io.getMouseWheelH() + (float) xOffset);
             io.setMouseWheel(io.getMouseWheel() + (float) yOffset);
+
+            if (!io.getWantCaptureMouse()) MouseListener.mouseScrollCallback(w, xOffset, yOffset);
         });
 
         io.setSetClipboardTextFn(new ImStrConsumer() {
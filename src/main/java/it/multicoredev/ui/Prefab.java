@@ -0,0 +1,91 @@
+package it.multicoredev.ui;
+
+import it.multicoredev.ui.components.Component;
+import it.multicoredev.ui.components.ComponentPool;
+import it.multicoredev.ui.components.codec.ComponentCodec;
+import it.multicoredev.ui.components.codec.ComponentCodecs;
+
+/**
+ * BSD 3-Clause License
+ * <p>
+ * Copyright (c) 2022, Lorenzo Magni
+ * All rights reserved.
+ * <p>
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * <p>
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * <p>
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * <p>
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+// Shared template of a placed object. Instances start out referencing the component values of the template,
+// the components never modify a shared value in place so editing an instance only replaces its own reference.
+public class Prefab {
+    private final String id;
+    private final String name;
+    private final Component[] template;
+    private final ComponentCodec<?>[] codecs;
+
+    public Prefab(String id, String name, Component... template) {
+        this.id = id;
+        this.name = name;
+        this.template = template;
+        this.codecs = new ComponentCodec<?>[template.length];
+
+        for (int i = 0; i < template.length; i++) {
+            codecs[i] = ComponentCodecs.get(template[i].getClass());
+            if (codecs[i] == null) throw new IllegalArgumentException("Prefab components need a @ComponentType: " + template[i].getClass().getName());
+        }
+    }
+
+    public GameObject instantiate(Transform transform, int zIndex) {
+        GameObject obj = GameObjectPool.obtain(name, transform, zIndex);
+        obj.setPrefab(this);
+
+        for (int i = 0; i < template.length; i++) {
+            Component component = ComponentPool.obtain(template[i].getClass());
+            obj.addComponent(component == null ? ComponentCodecs.copy(codecs[i], template[i]) : ComponentCodecs.copy(codecs[i], template[i], component));
+        }
+
+        return obj;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    // The first size() components of an instance belong to the prefab, in the same order
+    public int size() {
+        return template.length;
+    }
+
+    public Component getTemplate(int index) {
+        return template[index];
+    }
+
+    public ComponentCodec<?> getCodec(int index) {
+        return codecs[index];
+    }
+}
@@ -2,8 +2,13 @@ package it.multicoredev.ui;
 
 import it.multicoredev.ui.components.Sprite;
 import it.multicoredev.ui.components.SpriteRenderer;
+import it.multicoredev.ui.components.SpriteSheet;
+import it.multicoredev.utils.AssetPool;
 import org.joml.Vector2f;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
  * BSD 3-Clause License
  * <p>
@@ -36,6 +41,35 @@ import org.joml.Vector2f;
  * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 public class Prefabs {
+    private static final Map<String, Prefab> prefabs = new ConcurrentHashMap<>();
+
+    public static void register(Prefab prefab) {
+        prefabs.put(prefab.getId(), prefab);
+    }
+
+    // Saves refer to prefabs by id, sprite prefabs are created on first use so they do not need to be registered
+    public static Prefab get(String id) {
+        Prefab prefab = prefabs.get(id);
+        if (prefab != null) return prefab;
+
+        int separator = id.lastIndexOf('#');
+        if (separator < 0) return null;
+
+        try {
+            return sprite(id.substring(0, separator), Integer.parseInt(id.substring(separator + 1)));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    public static Prefab sprite(String spriteSheet, int index) {
+        return prefabs.computeIfAbsent(spriteSheet + "#" + index, id -> {
+            SpriteSheet sheet = AssetPool.getSpriteSheet(spriteSheet);
+            if (sheet == null) throw new IllegalArgumentException("Unknown sprite sheet " + spriteSheet);
+
+            return new Prefab(id, "sprite_obj_gen", new SpriteRenderer(sheet.getSprite(index)));
+        });
+    }
 
     public static GameObject generateSpriteObject(Sprite sprite, float sizeX, float sizeY, int zIndex) {
         GameObject block = new GameObject("sprite_obj_gen", new Transform(new Vector2f(), new Vector2f(sizeX, sizeY)), zIndex);
@@ -1,16 +1,26 @@
 package it.multicoredev.ui;
 
-import it.multicoredev.ui.components.SpriteSheet;
+import it.multicoredev.ui.listeners.Input;
 import it.multicoredev.ui.listeners.KeyListener;
 import it.multicoredev.ui.listeners.MouseListener;
 import it.multicoredev.ui.registries.Scenes;
 import it.multicoredev.ui.registries.Shaders;
 import it.multicoredev.ui.registries.SpriteSheets;
+import it.multicoredev.ui.renderer.GLExecutor;
 import it.multicoredev.ui.scenes.Scene;
+import it.multicoredev.utils.AssetPack;
 import it.multicoredev.utils.AssetPool;
 import org.lwjgl.glfw.GLFWErrorCallback;
 import org.lwjgl.opengl.GL;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static it.multicoredev.App.LOGGER;
 import static org.lwjgl.glfw.Callbacks.glfwFreeCallbacks;
 import static org.lwjgl.glfw.GLFW.*;
 import static org.lwjgl.opengl.GL11C.*;
@@ -58,6 +68,7 @@ public class Window {
     private static Window window = null;
 
     private Scene currentScene = null;
+    private final FrameClock clock = new FrameClock();
 
     // Callback documentation https://www.glfw.org/docs/3.3/input_guide.html
 
@@ -93,6 +104,15 @@ public class Window {
         get().height = height;
     }
 
+    public static FrameClock getClock() {
+        return get().clock;
+    }
+
+    // With vsync off the frame clock limiter paces the frames, see FrameClock.setTargetFps
+    public static void setVSync(boolean vSync) {
+        glfwSwapInterval(vSync ? 1 : 0);
+    }
+
     public static Scene getScene() {
         return get().currentScene;
     }
@@ -101,16 +121,25 @@ public class Window {
         Scene newScene = scene.getInstance();
         if (newScene == null) throw new IllegalStateException("Scene not initialized");
 
+        Scene oldScene = get().currentScene;
+        if (oldScene != null) oldScene.unload();
+
         get().currentScene = newScene;
-        newScene.load(scene.getPath());
+        // Levels without a binary save yet are imported from json, the next save converts them
+        newScene.load(Files.exists(Path.of(scene.getPath())) ? scene.getPath() : scene.getJsonPath());
         newScene.init();
         newScene.start();
+
+        AssetPool.releaseUnusedShaders();
     }
 
     public void run() {
         init();
         loop();
 
+        if (currentScene != null) currentScene.unload();
+        AssetPool.shutdown();
+
         // Free the window callbacks and destroy the window
         glfwFreeCallbacks(windowId);
         glfwDestroyWindow(windowId);
@@ -164,6 +193,7 @@ public class Window {
         // creates the GLCapabilities instance and makes the OpenGL
         // bindings available for use.
         GL.createCapabilities();
+        GLExecutor.init();
 
         // Alpha blending
         glEnable(GL_BLEND);
@@ -178,35 +208,44 @@ public class Window {
     }
 
     private void loop() {
-        float beginTime = (float) glfwGetTime();
-        float endTime;
         float dt = -1.0f;
+        clock.start();
 
         while (!glfwWindowShouldClose(windowId)) {
             // Poll events
             glfwPollEvents();
+            Input.update();
+
+            // Finish assets loaded in the background since the last frame (texture uploads, shader linking)
+            GLExecutor.process();
+            AssetPool.trim();
 
             glClearColor(windowColor[0], windowColor[1], windowColor[2], windowColor[3]);
             glClear(GL_COLOR_BUFFER_BIT);
 
-            if (dt >= 0) currentScene.update(dt);
+            if (dt >= 0) currentScene.frame(dt);
 
             imGuiLayer.update(dt, currentScene);
             glfwSwapBuffers(windowId);
 
-            endTime = (float) glfwGetTime();
-            // Delta time
-            dt = endTime - beginTime;
-            beginTime = endTime;
+            dt = (float) clock.tick();
         }
     }
 
     private void loadResources() {
-        AssetPool.getShader(Shaders.DEFAULT);
+        AssetPool.mountPack(AssetPack.DEFAULT_PATH);
+
+        // Start everything at once so files are read and decoded in parallel, then wait for all of it together
+        List<CompletableFuture<?>> loads = new ArrayList<>();
+        loads.add(AssetPool.loadShaderAsync(Shaders.DEFAULT).exceptionally(e -> logLoadError(Shaders.DEFAULT, e)));
+        SpriteSheets.DEFINITIONS.forEach(def -> loads.add(AssetPool.loadSpriteSheetAsync(def).exceptionally(e -> logLoadError(def.path(), e))));
+
+        // A broken asset is logged and left out, it does not stop the window
+        GLExecutor.await(CompletableFuture.allOf(loads.toArray(CompletableFuture[]::new)));
+    }
 
-        AssetPool.addSpriteSheet(SpriteSheets.SPRITESHEET, new SpriteSheet(AssetPool.getTexture(SpriteSheets.SPRITESHEET), 16, 16, 26, 0));
-        AssetPool.addSpriteSheet(SpriteSheets.DECORATIONS_AND_BLOCKS, new SpriteSheet(AssetPool.getTexture(SpriteSheets.DECORATIONS_AND_BLOCKS), 16, 16, 80, 0));
-        AssetPool.addSpriteSheet(SpriteSheets.ICONS, new SpriteSheet(AssetPool.getTexture(SpriteSheets.ICONS), 16, 16, 16, 0));
-        AssetPool.addSpriteSheet(SpriteSheets.PIPES, new SpriteSheet(AssetPool.getTexture(SpriteSheets.PIPES), 16, 16, 6, 0));
+    private static <T> T logLoadError(String path, Throwable e) {
+        LOGGER.error("Cannot load '" + path + "'", e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+        return null;
     }
 }
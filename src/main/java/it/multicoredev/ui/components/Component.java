@@ -2,16 +2,18 @@ package it.multicoredev.ui.components;
 
 import com.google.gson.*;
 import com.google.gson.annotations.JsonAdapter;
-import imgui.ImGui;
 import it.multicoredev.ui.GameObject;
-import org.joml.Vector3f;
-import org.joml.Vector4f;
+import it.multicoredev.ui.Window;
+import it.multicoredev.ui.components.codec.ComponentCodec;
+import it.multicoredev.ui.components.codec.ComponentCodecs;
+import it.multicoredev.ui.components.codec.JsonComponentReader;
+import it.multicoredev.ui.components.codec.JsonComponentWriter;
+import it.multicoredev.ui.scenes.Scene;
 
-import java.lang.reflect.Field;
-import java.lang.reflect.Modifier;
 import java.lang.reflect.Type;
-
-import static it.multicoredev.App.LOGGER;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * BSD 3-Clause License
@@ -46,7 +48,7 @@ import static it.multicoredev.App.LOGGER;
  */
 @JsonAdapter(Component.JsonAdapter.class)
 public abstract class Component {
-    private static int IN_COUNTER = 0;
+    private static final AtomicInteger IN_COUNTER = new AtomicInteger();
     private int uid = -1;
 
     protected transient GameObject gameObject = null;
@@ -59,6 +61,27 @@ public abstract class Component {
 
     }
 
+    public void destroy() {
+
+    }
+
+    // Called when the component goes back to the ComponentPool, subclasses clear their transient state
+    protected void reset() {
+        uid = -1;
+        gameObject = null;
+    }
+
+    // Lets the scene journal record the change
+    protected void markDirty() {
+        Scene scene = Window.getScene();
+        if (scene != null) scene.markDirty(this);
+    }
+
+    protected void markTransformDirty() {
+        Scene scene = Window.getScene();
+        if (scene != null && gameObject != null) scene.markDirty(gameObject);
+    }
+
     public void setGameObject(GameObject gameObject) {
         this.gameObject = gameObject;
     }
@@ -68,61 +91,12 @@ public abstract class Component {
     }
 
     public void imgui() {
-        try {
-            Field[] fields = getClass().getDeclaredFields();
-            for (Field field : fields) {
-                if (Modifier.isTransient(field.getModifiers())) continue;
-
-                boolean isPrivate = Modifier.isPrivate(field.getModifiers());
-                if (isPrivate) field.setAccessible(true);
-
-                Class<?> type = field.getType();
-                Object value = field.get(this);
-                String name = field.getName();
-
-                if (type == int.class) {
-                    int[] imInt = {(int) value};
-
-                    if (ImGui.dragInt(name, imInt)) {
-                        field.set(this, imInt[0]);
-                    }
-                } else if (type == float.class) {
-                    float[] imFloat = {(float) value};
-
-                    if (ImGui.dragFloat(name, imFloat)) {
-                        field.set(this, imFloat[0]);
-                    }
-                } else if (type == boolean.class) {
-                    boolean val = (boolean) value;
-
-                    if (ImGui.checkbox(name, val)) {
-                        field.set(this, !val);
-                    }
-                } else if (type == Vector3f.class) {
-                    Vector3f val = (Vector3f) value;
-                    float[] imVec = {val.x, val.y, val.z};
-
-                    if (ImGui.dragFloat3(name, imVec)) {
-                        val.set(imVec[0], imVec[1], imVec[2]);
-                    }
-                } else if (type == Vector4f.class) {
-                    Vector4f val = (Vector4f) value;
-                    float[] imVec = {val.x, val.y, val.z, val.w};
-
-                    if (ImGui.dragFloat4(name, imVec)) {
-                        val.set(imVec[0], imVec[1], imVec[2], imVec[3]);
-                    }
-                }
-                if (isPrivate) field.setAccessible(false);
-            }
-        } catch (IllegalAccessException e) {
-            LOGGER.error(e.getMessage(), e);
-        }
+        if (ComponentInspector.of(getClass()).draw(this)) markDirty();
     }
 
     public void generateId() {
         if (uid == -1) {
-            uid = IN_COUNTER++;
+            uid = IN_COUNTER.getAndIncrement();
         }
     }
 
@@ -131,10 +105,14 @@ public abstract class Component {
     }
 
     public static void init(int maxId) {
-        IN_COUNTER = maxId;
+        IN_COUNTER.set(maxId);
     }
 
+    // Components with a @ComponentType are written by their generated codec under their numeric id,
+    // others and saves from before the codecs fall back to the class name and Gson reflection
     public static class JsonAdapter implements JsonDeserializer<Component>, JsonSerializer<Component> {
+        // Scenes repeat the same few types thousands of times, resolve each name only once
+        private static final Map<String, Class<?>> TYPES = new ConcurrentHashMap<>();
 
         @Override
         public Component deserialize(JsonElement json, Type t, JsonDeserializationContext ctx) throws JsonParseException {
@@ -143,21 +121,57 @@ public abstract class Component {
 
             if (!obj.has("type") || !obj.has("data")) throw new JsonParseException("Invalid or malformed Component: missing type or data");
 
-            String type = obj.get("type").getAsString();
+            JsonPrimitive type = obj.getAsJsonPrimitive("type");
+            JsonElement data = obj.get("data");
+
+            ComponentCodec<?> codec;
+            if (type.isNumber()) {
+                codec = ComponentCodecs.get(type.getAsInt());
+                if (codec == null) throw new JsonParseException("Unknown element 'type': " + type.getAsInt());
+            } else {
+                Class<?> clazz = resolve(type.getAsString());
+                codec = Component.class.isAssignableFrom(clazz) ? ComponentCodecs.get(clazz.asSubclass(Component.class)) : null;
+                if (codec == null) return ctx.deserialize(data, clazz);
+            }
+
+            JsonObject fields = data.getAsJsonObject();
+            Component component = codec.read(new JsonComponentReader(fields));
+            if (fields.has("uid")) component.uid = fields.get("uid").getAsInt();
+
+            return component;
+        }
+
+        private static Class<?> resolve(String type) {
+            Class<?> clazz = TYPES.get(type);
+            if (clazz != null) return clazz;
 
             try {
-                return ctx.deserialize(obj.get("data"), Class.forName(type));
+                clazz = Class.forName(type);
             } catch (ClassNotFoundException e) {
                 throw new JsonParseException("Unknown element 'type': " + type, e);
             }
+
+            TYPES.put(type, clazz);
+            return clazz;
         }
 
         @Override
         public JsonElement serialize(Component component, Type t, JsonSerializationContext ctx) {
             JsonObject json = new JsonObject();
-            json.addProperty("type", component.getClass().getCanonicalName());
-            json.add("data", ctx.serialize(component, component.getClass()));
+            ComponentCodec<?> codec = ComponentCodecs.get(component.getClass());
+
+            if (codec == null) {
+                json.addProperty("type", component.getClass().getCanonicalName());
+                json.add("data", ctx.serialize(component, component.getClass()));
+                return json;
+            }
+
+            JsonObject data = new JsonObject();
+            data.addProperty("uid", component.uid);
+            ComponentCodecs.write(codec, component, new JsonComponentWriter(data));
 
+            json.addProperty("type", codec.id());
+            json.add("data", data);
             return json;
         }
     }
@@ -0,0 +1,175 @@
+package it.multicoredev.ui.components;
+
+import imgui.ImGui;
+import org.joml.Vector3f;
+import org.joml.Vector4f;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static it.multicoredev.App.LOGGER;
+
+/**
+ * BSD 3-Clause License
+ * <p>
+ * Copyright (c) 2022, Lorenzo Magni
+ * All rights reserved.
+ * <p>
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * <p>
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * <p>
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * <p>
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+// Draws the editable fields of a component. The fields are looked up once per class and accessed through
+// method handles, drawing them allocates nothing.
+public class ComponentInspector {
+    private static final ClassValue<ComponentInspector> INSPECTORS = new ClassValue<>() {
+        @Override
+        protected ComponentInspector computeValue(Class<?> type) {
+            return new ComponentInspector(type);
+        }
+    };
+    private static final Map<Class<?>, Editor> EDITORS = new ConcurrentHashMap<>();
+
+    // ImGui runs on the main thread only, the editors share these.
+    // Objects are always replaced rather than edited in place, they can be shared with a prefab.
+    private static final int[] INT = new int[1];
+    private static final float[] FLOAT = new float[4];
+
+    static {
+        addEditor(int.class, (label, component, property) -> {
+            INT[0] = (int) property.getter.invokeExact(component);
+            if (!ImGui.dragInt(label, INT)) return false;
+
+            property.setter.invokeExact(component, INT[0]);
+            return true;
+        });
+        addEditor(float.class, (label, component, property) -> {
+            FLOAT[0] = (float) property.getter.invokeExact(component);
+            if (!ImGui.dragFloat(label, FLOAT)) return false;
+
+            property.setter.invokeExact(component, FLOAT[0]);
+            return true;
+        });
+        addEditor(boolean.class, (label, component, property) -> {
+            boolean value = (boolean) property.getter.invokeExact(component);
+            if (!ImGui.checkbox(label, value)) return false;
+
+            property.setter.invokeExact(component, !value);
+            return true;
+        });
+        addEditor(Vector3f.class, (label, component, property) -> {
+            Vector3f value = (Vector3f) (Object) property.getter.invokeExact(component);
+            FLOAT[0] = value.x;
+            FLOAT[1] = value.y;
+            FLOAT[2] = value.z;
+            if (!ImGui.dragFloat3(label, FLOAT)) return false;
+
+            property.setter.invokeExact(component, (Object) new Vector3f(FLOAT[0], FLOAT[1], FLOAT[2]));
+            return true;
+        });
+        addEditor(Vector4f.class, (label, component, property) -> {
+            Vector4f value = (Vector4f) (Object) property.getter.invokeExact(component);
+            FLOAT[0] = value.x;
+            FLOAT[1] = value.y;
+            FLOAT[2] = value.z;
+            FLOAT[3] = value.w;
+            if (!ImGui.dragFloat4(label, FLOAT)) return false;
+
+            property.setter.invokeExact(component, (Object) new Vector4f(FLOAT[0], FLOAT[1], FLOAT[2], FLOAT[3]));
+            return true;
+        });
+    }
+
+    private final Property[] properties;
+
+    private ComponentInspector(Class<?> type) {
+        List<Property> properties = new ArrayList<>();
+
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(type, MethodHandles.lookup());
+
+            for (Field field : type.getDeclaredFields()) {
+                if (Modifier.isTransient(field.getModifiers()) || Modifier.isStatic(field.getModifiers())) continue;
+
+                Editor editor = EDITORS.get(field.getType());
+                if (editor == null) continue;
+
+                // Editing a final object in place would change every instance sharing it, final fields are not editable
+                if (Modifier.isFinal(field.getModifiers())) continue;
+
+                // Primitives keep their type so that reading and writing them does not box
+                Class<?> valueType = field.getType().isPrimitive() ? field.getType() : Object.class;
+                MethodHandle getter = lookup.unreflectGetter(field).asType(MethodType.methodType(valueType, Object.class));
+                MethodHandle setter = lookup.unreflectSetter(field).asType(MethodType.methodType(void.class, Object.class, valueType));
+
+                properties.add(new Property(field.getName(), editor, getter, setter));
+            }
+        } catch (IllegalAccessException e) {
+            LOGGER.error("Cannot inspect " + type.getName(), e);
+        }
+
+        this.properties = properties.toArray(new Property[0]);
+    }
+
+    public static ComponentInspector of(Class<?> type) {
+        return INSPECTORS.get(type);
+    }
+
+    // Only affects the classes inspected after the call, add editors before the first frame
+    public static void addEditor(Class<?> type, Editor editor) {
+        EDITORS.put(type, editor);
+    }
+
+    // Returns true if any field was changed
+    public boolean draw(Object component) {
+        boolean changed = false;
+
+        for (Property property : properties) {
+            try {
+                changed |= property.editor.edit(property.label, component, property);
+            } catch (Throwable e) {
+                LOGGER.error("Error while inspecting " + property.label, e);
+            }
+        }
+
+        return changed;
+    }
+
+    @FunctionalInterface
+    public interface Editor {
+        // Returns true when the value was changed. The handles take the component as an Object and
+        // primitive values as their own type, everything else as an Object.
+        boolean edit(String label, Object component, Property property) throws Throwable;
+    }
+
+    public record Property(String label, Editor editor, MethodHandle getter, MethodHandle setter) {
+    }
+}
@@ -0,0 +1,99 @@
+package it.multicoredev.ui.components;
+
+import it.multicoredev.ui.components.codec.ComponentCodec;
+import it.multicoredev.ui.components.codec.ComponentCodecs;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * BSD 3-Clause License
+ * <p>
+ * Copyright (c) 2022, Lorenzo Magni
+ * All rights reserved.
+ * <p>
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * <p>
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * <p>
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * <p>
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+// Recycled instances of the common components. A released component gets the saved fields of a fresh instance
+// back through its codec and clears its own transient state in reset().
+public class ComponentPool {
+    private static final int MAX_POOLED = 4096;
+    private static final Map<Class<?>, Pool<?>> POOLS = new ConcurrentHashMap<>();
+
+    static {
+        register(SpriteRenderer.class, SpriteRenderer::new);
+        register(RigidBody.class, RigidBody::new);
+    }
+
+    public static <T extends Component> void register(Class<T> type, Supplier<T> factory) {
+        ComponentCodec<T> codec = ComponentCodecs.get(type);
+        if (codec == null) throw new IllegalArgumentException("Pooled components need a @ComponentType: " + type.getName());
+
+        POOLS.put(type, new Pool<>(codec, factory));
+    }
+
+    // Returns null if the type is not pooled
+    @SuppressWarnings("unchecked")
+    public static <T extends Component> T obtain(Class<T> type) {
+        Pool<T> pool = (Pool<T>) POOLS.get(type);
+        return pool == null ? null : pool.obtain();
+    }
+
+    // The component must already be destroyed and detached from its GameObject
+    @SuppressWarnings("unchecked")
+    public static <T extends Component> void release(T component) {
+        Pool<T> pool = (Pool<T>) POOLS.get(component.getClass());
+        if (pool != null) pool.release(component);
+    }
+
+    private static class Pool<T extends Component> {
+        private final ComponentCodec<T> codec;
+        private final Supplier<T> factory;
+        private final T defaults;
+        private final ArrayDeque<T> free = new ArrayDeque<>();
+
+        private Pool(ComponentCodec<T> codec, Supplier<T> factory) {
+            this.codec = codec;
+            this.factory = factory;
+            this.defaults = factory.get();
+        }
+
+        private synchronized T obtain() {
+            T component = free.poll();
+            return component != null ? component : factory.get();
+        }
+
+        private synchronized void release(T component) {
+            if (free.size() >= MAX_POOLED) return;
+
+            component.reset();
+            codec.copy(defaults, component);
+            free.push(component);
+        }
+    }
+}
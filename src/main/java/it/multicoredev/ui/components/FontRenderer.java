@@ -1,5 +1,7 @@
 package it.multicoredev.ui.components;
 
+import it.multicoredev.ui.components.codec.ComponentType;
+
 /**
  * BSD 3-Clause License
  * <p>
@@ -31,6 +33,7 @@ package it.multicoredev.ui.components;
  * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
  * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
+@ComponentType(id = 2)
 public class FontRenderer extends Component {
 
     @Override
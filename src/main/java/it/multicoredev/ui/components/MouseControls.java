@@ -1,8 +1,12 @@
 package it.multicoredev.ui.components;
 
+import imgui.ImGui;
 import it.multicoredev.ui.GameObject;
+import it.multicoredev.ui.GameObjectPool;
 import it.multicoredev.ui.Window;
-import it.multicoredev.ui.listeners.MouseListener;
+import it.multicoredev.ui.listeners.Input;
+import it.multicoredev.ui.listeners.InputSnapshot;
+import it.multicoredev.ui.scenes.Scene;
 
 import static org.lwjgl.glfw.GLFW.GLFW_MOUSE_BUTTON_LEFT;
 
@@ -39,23 +43,35 @@ import static org.lwjgl.glfw.GLFW.GLFW_MOUSE_BUTTON_LEFT;
  */
 public class MouseControls extends Component {
     private GameObject holdingObject = null;
+    // The object can be destroyed and recycled by the pool while it is held
+    private long holdingHandle = GameObjectPool.NO_HANDLE;
 
     public void pickUpObject(GameObject obj) {
         holdingObject = obj;
-        Window.getScene().addGameObject(obj);
+        holdingHandle = obj.getHandle();
+        // Can be called while the scene updates its objects, the spawn is applied at the end of the frame
+        Window.getScene().commands().spawn(obj);
     }
 
     public void place() {
         holdingObject = null;
+        holdingHandle = GameObjectPool.NO_HANDLE;
     }
 
     @Override
     public void update(float dt) {
+        InputSnapshot input = Input.snapshot();
+        if (holdingObject != null && !GameObjectPool.isAlive(holdingObject, holdingHandle)) place();
+
         if (holdingObject != null) {
-            holdingObject.transform.position.x = MouseListener.getOrthoX() - 16;
-            holdingObject.transform.position.y = MouseListener.getOrthoY() - 16;
+            holdingObject.transform.position.x = input.getWorldX() - 16;
+            holdingObject.transform.position.y = input.getWorldY() - 16;
 
-            if (MouseListener.isMouseButtonDown(GLFW_MOUSE_BUTTON_LEFT)) place();
+            if (input.isButtonHeld(GLFW_MOUSE_BUTTON_LEFT)) place();
+        } else if (input.isButtonPressed(GLFW_MOUSE_BUTTON_LEFT) && !ImGui.getIO().getWantCaptureMouse()) {
+            // Selects what is under the cursor, the click that placed an object is still held and does not count
+            Scene scene = Window.getScene();
+            scene.setActiveGameObject(scene.pick(input.getWorldX(), input.getWorldY()));
         }
     }
 }
@@ -1,6 +1,10 @@
 package it.multicoredev.ui.components;
 
+import it.multicoredev.ui.components.codec.ComponentType;
+import it.multicoredev.ui.physics.PhysicsWorld;
+import it.multicoredev.ui.scenes.Scene;
 import org.joml.Vector3f;
+import org.joml.Vector3fc;
 import org.joml.Vector4f;
 
 /**
@@ -34,9 +38,89 @@ import org.joml.Vector4f;
  * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
  * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
+@ComponentType(id = 1)
 public class RigidBody extends Component {
-    private int colliderType = 0;
-    private float friction = 0.8f;
-    private Vector3f velocity = new Vector3f(0, 0.5f, 0);
+    // Collider types, STATIC is a flag on top of the shape
+    public static final int BOX = 0;
+    public static final int CIRCLE = 1;
+    public static final int STATIC = 2;
+
+    int colliderType = 0;
+    float friction = 0.8f;
+    Vector3f velocity = new Vector3f(0, 0.5f, 0);
     private transient Vector4f tmp = new Vector4f();
+
+    private transient PhysicsWorld world = null;
+    private transient int body = -1;
+    // The velocity can be shared with a prefab until the first write replaces it
+    private transient boolean ownsVelocity = false;
+
+    @Override
+    public void start() {
+        Scene scene = gameObject.getScene();
+        if (scene != null && world == null) scene.getPhysics().add(this);
+    }
+
+    @Override
+    public void destroy() {
+        if (world != null) world.remove(this);
+    }
+
+    @Override
+    protected void reset() {
+        super.reset();
+        world = null;
+        body = -1;
+        ownsVelocity = false;
+    }
+
+    public int getColliderType() {
+        return colliderType;
+    }
+
+    public float getFriction() {
+        return friction;
+    }
+
+    // Read only, see updateVelocity
+    public Vector3fc getVelocity() {
+        return velocity;
+    }
+
+    public void setVelocity(float x, float y) {
+        updateVelocity(x, y);
+        wake();
+    }
+
+    // Called by the physics world after each step, without waking the body up
+    public void updateVelocity(float x, float y) {
+        if (velocity.x == x && velocity.y == y) return;
+
+        if (!ownsVelocity) {
+            velocity = new Vector3f(velocity);
+            ownsVelocity = true;
+        }
+        velocity.set(x, y, velocity.z);
+    }
+
+    public void wake() {
+        if (world != null) world.wake(body);
+    }
+
+    public boolean isSleeping() {
+        return world != null && world.isSleeping(body);
+    }
+
+    public PhysicsWorld getWorld() {
+        return world;
+    }
+
+    public int getBody() {
+        return body;
+    }
+
+    public void setBody(PhysicsWorld world, int body) {
+        this.world = world;
+        this.body = body;
+    }
 }
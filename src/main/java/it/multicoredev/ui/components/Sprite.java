@@ -91,6 +91,14 @@ public class Sprite {
         return this;
     }
 
+    public void acquire() {
+        if (texture != null) texture.acquire();
+    }
+
+    public void release() {
+        if (texture != null) texture.release();
+    }
+
     public int getTextureId() {
         return texture == null ? -1 : texture.getId();
     }
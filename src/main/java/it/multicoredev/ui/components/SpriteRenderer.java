@@ -1,9 +1,12 @@
 package it.multicoredev.ui.components;
 
 import it.multicoredev.ui.Transform;
+import it.multicoredev.ui.components.codec.ComponentType;
+import it.multicoredev.ui.renderer.RenderBatch;
 import it.multicoredev.ui.renderer.Texture;
 import org.joml.Vector2f;
 import org.joml.Vector4f;
+import org.joml.Vector4fc;
 
 /**
  * BSD 3-Clause License
@@ -36,12 +39,18 @@ import org.joml.Vector4f;
  * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
  * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
+@ComponentType(id = 0)
 public class SpriteRenderer extends Component {
-    private Vector4f color = new Vector4f(1, 1, 1, 1);
-    private Sprite sprite = new Sprite();
+    Vector4f color = new Vector4f(1, 1, 1, 1);
+    Sprite sprite = new Sprite();
 
     private transient Transform lastTransform;
     private transient boolean isDirty = true;
+    private transient Sprite acquiredSprite = null;
+    // Slot of the sprite in its render batch, so it can be removed without a search
+    private transient RenderBatch batch = null;
+    private transient int batchIndex = -1;
+    private transient boolean interpolated = false;
 
     public SpriteRenderer() {
 
@@ -55,9 +64,15 @@ public class SpriteRenderer extends Component {
         this.sprite = sprite;
     }
 
+    public SpriteRenderer(Vector4f color, Sprite sprite) {
+        this.color = color;
+        this.sprite = sprite;
+    }
+
     @Override
     public void start() {
         lastTransform = gameObject.transform.copy();
+        acquireSprite();
     }
 
     @Override
@@ -65,18 +80,34 @@ public class SpriteRenderer extends Component {
         if (!lastTransform.equals(gameObject.transform)) {
             gameObject.transform.copyTo(lastTransform);
             isDirty = true;
+            markTransformDirty();
         }
     }
 
-    public Vector4f getColor() {
+    // Read only, the value can be shared with a prefab and every instance made from it
+    public Vector4fc getColor() {
         return color;
     }
 
-    public void setColor(Vector4f color) {
+    public void setColor(Vector4fc color) {
         if (this.color.equals(color)) return;
 
-        this.color.set(color);
+        // The old value can be shared with a prefab, replace it instead of writing into it
+        this.color = new Vector4f(color);
         isDirty = true;
+        markDirty();
+    }
+
+    @Override
+    public void imgui() {
+        // The inspector assigns a new value to the field, the quad has to be rebuilt
+        Vector4f previous = color;
+        super.imgui();
+        if (color != previous) isDirty = true;
+    }
+
+    public Sprite getSprite() {
+        return sprite;
     }
 
     public Texture getTexture() {
@@ -87,11 +118,61 @@ public class SpriteRenderer extends Component {
         return sprite.getTexCoords();
     }
 
+    @Override
+    public void destroy() {
+        if (acquiredSprite != null) acquiredSprite.release();
+        acquiredSprite = null;
+    }
+
+    @Override
+    protected void reset() {
+        super.reset();
+        lastTransform = null;
+        isDirty = true;
+        acquiredSprite = null;
+        batch = null;
+        batchIndex = -1;
+        interpolated = false;
+    }
+
     public void setSprite(Sprite sprite) {
         //if (this.sprite.equals(sprite)) return;
 
         this.sprite = sprite;
+        if (lastTransform != null) acquireSprite();
         isDirty = true;
+        markDirty();
+    }
+
+    // Keeps the texture of the current sprite from being evicted while it is rendered
+    private void acquireSprite() {
+        if (acquiredSprite == sprite) return;
+
+        if (acquiredSprite != null) acquiredSprite.release();
+        sprite.acquire();
+        acquiredSprite = sprite;
+    }
+
+    public RenderBatch getBatch() {
+        return batch;
+    }
+
+    public int getBatchIndex() {
+        return batchIndex;
+    }
+
+    public void setBatch(RenderBatch batch, int batchIndex) {
+        this.batch = batch;
+        this.batchIndex = batchIndex;
+    }
+
+    // Set while the vertices hold a position between two simulation steps
+    public boolean isInterpolated() {
+        return interpolated;
+    }
+
+    public void setInterpolated(boolean interpolated) {
+        this.interpolated = interpolated;
     }
 
     public boolean isDirty() {
@@ -70,6 +70,10 @@ public class SpriteSheet {
         }
     }
 
+    public Texture getTexture() {
+        return texture;
+    }
+
     public Sprite getSprite(int index) {
         return sprites.get(index);
     }
@@ -0,0 +1,104 @@
+package it.multicoredev.ui.components.codec;
+
+import it.multicoredev.ui.components.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+
+/**
+ * BSD 3-Clause License
+ * <p>
+ * Copyright (c) 2022, Lorenzo Magni
+ * All rights reserved.
+ * <p>
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * <p>
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * <p>
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * <p>
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+public class ComponentCodecs {
+    private static final ComponentCodec<?>[] BY_ID;
+    private static final Map<Class<?>, ComponentCodec<?>> BY_TYPE = new HashMap<>();
+
+    // The codecs are generated by ComponentCodecProcessor and listed in META-INF/services
+    static {
+        List<ComponentCodec<?>> codecs = new ArrayList<>();
+        for (ComponentCodec<?> codec : ServiceLoader.load(ComponentCodec.class, ComponentCodecs.class.getClassLoader())) codecs.add(codec);
+
+        int maxId = -1;
+        for (ComponentCodec<?> codec : codecs) maxId = Math.max(maxId, codec.id());
+
+        BY_ID = new ComponentCodec<?>[maxId + 1];
+        for (ComponentCodec<?> codec : codecs) {
+            if (BY_ID[codec.id()] != null) {
+                throw new IllegalStateException("@ComponentType id " + codec.id() + " is used by both " + BY_ID[codec.id()].type().getName() + " and " + codec.type().getName());
+            }
+
+            BY_ID[codec.id()] = codec;
+            BY_TYPE.put(codec.type(), codec);
+        }
+    }
+
+    public static ComponentCodec<?> get(int id) {
+        return id >= 0 && id < BY_ID.length ? BY_ID[id] : null;
+    }
+
+    // Returns null for components without @ComponentType, they are saved through reflection
+    @SuppressWarnings("unchecked")
+    public static <T extends Component> ComponentCodec<T> get(Class<T> type) {
+        return (ComponentCodec<T>) BY_TYPE.get(type);
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T extends Component> void write(ComponentCodec<T> codec, Component component, ComponentWriter out) {
+        codec.write((T) component, out);
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T extends Component> Component copy(ComponentCodec<T> codec, Component template) {
+        return codec.copy((T) template);
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T extends Component> Component copy(ComponentCodec<T> codec, Component from, Component to) {
+        return codec.copy((T) from, (T) to);
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T extends Component> int overrides(ComponentCodec<T> codec, Component component, Component template) {
+        return codec.overrides((T) component, (T) template);
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T extends Component> void writeOverrides(ComponentCodec<T> codec, Component component, Component template, ComponentWriter out) {
+        codec.writeOverrides((T) component, (T) template, out);
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T extends Component> void readOverrides(ComponentCodec<T> codec, Component component, ComponentReader in) {
+        codec.readOverrides((T) component, in);
+    }
+}
@@ -0,0 +1,121 @@
+package it.multicoredev.ui.components.codec;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import it.multicoredev.ui.components.Sprite;
+import it.multicoredev.ui.renderer.Texture;
+import it.multicoredev.utils.AssetPool;
+import org.joml.Vector2f;
+import org.joml.Vector3f;
+import org.joml.Vector4f;
+
+/**
+ * BSD 3-Clause License
+ * <p>
+ * Copyright (c) 2022, Lorenzo Magni
+ * All rights reserved.
+ * <p>
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * <p>
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * <p>
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * <p>
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+public class JsonComponentReader implements ComponentReader {
+    private final JsonObject json;
+
+    public JsonComponentReader(JsonObject json) {
+        this.json = json;
+    }
+
+    @Override
+    public boolean has(String name) {
+        return json.has(name) && !json.get(name).isJsonNull();
+    }
+
+    @Override
+    public int readInt(String name) {
+        return json.get(name).getAsInt();
+    }
+
+    @Override
+    public float readFloat(String name) {
+        return json.get(name).getAsFloat();
+    }
+
+    @Override
+    public boolean readBoolean(String name) {
+        return json.get(name).getAsBoolean();
+    }
+
+    @Override
+    public String readString(String name) {
+        return json.get(name).getAsString();
+    }
+
+    @Override
+    public Vector2f readVector2f(String name) {
+        return vector(json.getAsJsonObject(name));
+    }
+
+    @Override
+    public Vector3f readVector3f(String name) {
+        JsonObject obj = json.getAsJsonObject(name);
+        return new Vector3f(obj.get("x").getAsFloat(), obj.get("y").getAsFloat(), obj.get("z").getAsFloat());
+    }
+
+    @Override
+    public Vector4f readVector4f(String name) {
+        JsonObject obj = json.getAsJsonObject(name);
+        return new Vector4f(obj.get("x").getAsFloat(), obj.get("y").getAsFloat(), obj.get("z").getAsFloat(), obj.get("w").getAsFloat());
+    }
+
+    @Override
+    public Sprite readSprite(String name) {
+        JsonObject obj = json.getAsJsonObject(name);
+
+        Texture texture = null;
+        if (obj.has("texture") && obj.get("texture").isJsonObject()) {
+            texture = AssetPool.getTexture(obj.getAsJsonObject("texture").get("path").getAsString());
+        }
+
+        JsonArray array = obj.getAsJsonArray("texCoords");
+        Vector2f[] texCoords = new Vector2f[array.size()];
+        for (int i = 0; i < texCoords.length; i++) texCoords[i] = vector(array.get(i).getAsJsonObject());
+
+        return new Sprite(texture, texCoords, obj.get("width").getAsFloat(), obj.get("height").getAsFloat());
+    }
+
+    @Override
+    public int readMask(String[] names) {
+        int mask = 0;
+        for (int i = 0; i < names.length; i++) {
+            if (has(names[i])) mask |= 1 << i;
+        }
+
+        return mask;
+    }
+
+    private static Vector2f vector(JsonObject obj) {
+        return new Vector2f(obj.get("x").getAsFloat(), obj.get("y").getAsFloat());
+    }
+}
@@ -0,0 +1,127 @@
+package it.multicoredev.ui.components.codec;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import it.multicoredev.ui.components.Sprite;
+import org.joml.Vector2f;
+import org.joml.Vector3f;
+import org.joml.Vector4f;
+
+/**
+ * BSD 3-Clause License
+ * <p>
+ * Copyright (c) 2022, Lorenzo Magni
+ * All rights reserved.
+ * <p>
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * <p>
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * <p>
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * <p>
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+// Writes the same layout Gson produced through reflection, so old and new saves stay interchangeable
+public class JsonComponentWriter implements ComponentWriter {
+    private final JsonObject json;
+
+    public JsonComponentWriter(JsonObject json) {
+        this.json = json;
+    }
+
+    @Override
+    public void writeInt(String name, int value) {
+        json.addProperty(name, value);
+    }
+
+    @Override
+    public void writeFloat(String name, float value) {
+        json.addProperty(name, value);
+    }
+
+    @Override
+    public void writeBoolean(String name, boolean value) {
+        json.addProperty(name, value);
+    }
+
+    @Override
+    public void writeString(String name, String value) {
+        if (value != null) json.addProperty(name, value);
+    }
+
+    @Override
+    public void writeVector2f(String name, Vector2f value) {
+        if (value != null) json.add(name, vector(value));
+    }
+
+    @Override
+    public void writeVector3f(String name, Vector3f value) {
+        if (value == null) return;
+
+        JsonObject obj = new JsonObject();
+        obj.addProperty("x", value.x);
+        obj.addProperty("y", value.y);
+        obj.addProperty("z", value.z);
+        json.add(name, obj);
+    }
+
+    @Override
+    public void writeVector4f(String name, Vector4f value) {
+        if (value == null) return;
+
+        JsonObject obj = new JsonObject();
+        obj.addProperty("x", value.x);
+        obj.addProperty("y", value.y);
+        obj.addProperty("z", value.z);
+        obj.addProperty("w", value.w);
+        json.add(name, obj);
+    }
+
+    @Override
+    public void writeSprite(String name, Sprite value) {
+        if (value == null) return;
+
+        JsonObject obj = new JsonObject();
+        if (value.getTexture() != null && value.getTexture().getPath() != null) {
+            JsonObject texture = new JsonObject();
+            texture.addProperty("path", value.getTexture().getPath());
+            obj.add("texture", texture);
+        }
+
+        JsonArray texCoords = new JsonArray();
+        for (Vector2f texCoord : value.getTexCoords()) texCoords.add(vector(texCoord));
+        obj.add("texCoords", texCoords);
+
+        obj.addProperty("width", value.getWidth());
+        obj.addProperty("height", value.getHeight());
+        json.add(name, obj);
+    }
+
+    @Override
+    public void writeMask(String[] names, int mask) {
+    }
+
+    private static JsonObject vector(Vector2f value) {
+        JsonObject obj = new JsonObject();
+        obj.addProperty("x", value.x);
+        obj.addProperty("y", value.y);
+        return obj;
+    }
+}
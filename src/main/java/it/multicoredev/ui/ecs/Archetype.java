@@ -0,0 +1,120 @@
+package it.multicoredev.ui.ecs;
+
+import it.multicoredev.ui.GameObject;
+import it.multicoredev.ui.components.SpriteRenderer;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * BSD 3-Clause License
+ * <p>
+ * Copyright (c) 2022, Lorenzo Magni
+ * All rights reserved.
+ * <p>
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * <p>
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * <p>
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * <p>
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+// Every entity with exactly the same set of component types. The chunks are kept packed: only the last one can have free rows.
+public final class Archetype {
+    private final EntityStorage storage;
+    private final BitSet mask;
+    private final boolean hasSprite;
+    private final List<Chunk> chunks = new ArrayList<>();
+
+    Archetype(EntityStorage storage, BitSet mask) {
+        this.storage = storage;
+        this.mask = mask;
+        this.hasSprite = mask.get(ComponentTypes.id(SpriteRenderer.class));
+    }
+
+    public EntityStorage storage() {
+        return storage;
+    }
+
+    // Read only
+    public BitSet mask() {
+        return mask;
+    }
+
+    public boolean hasSprite() {
+        return hasSprite;
+    }
+
+    public List<Chunk> chunks() {
+        return chunks;
+    }
+
+    void add(GameObject obj) {
+        Chunk chunk = chunks.isEmpty() ? null : chunks.get(chunks.size() - 1);
+        if (chunk == null || chunk.isFull()) {
+            chunk = new Chunk(this);
+            chunks.add(chunk);
+        }
+
+        int row = chunk.size++;
+        chunk.objects[row] = obj;
+        obj.setStorage(chunk, row);
+    }
+
+    void remove(GameObject obj) {
+        Chunk chunk = obj.getChunk();
+        int row = obj.getRow();
+        Chunk last = chunks.get(chunks.size() - 1);
+
+        if (chunk != last) {
+            // Fill the hole with the last entity of the archetype, so that only the last chunk has free rows
+            GameObject moved = last.objects[last.size - 1];
+            copyRow(last, last.size - 1, chunk, row);
+            last.removeRow(last.size - 1);
+            moved.setStorage(chunk, row);
+        } else {
+            GameObject moved = chunk.removeRow(row);
+            if (moved != null) moved.setStorage(chunk, row);
+        }
+
+        if (last.size == 0) chunks.remove(chunks.size() - 1);
+        obj.setStorage(null, -1);
+    }
+
+    private static void copyRow(Chunk from, int fromRow, Chunk to, int toRow) {
+        to.objects[toRow] = from.objects[fromRow];
+        to.changed[toRow] = from.changed[fromRow];
+        to.x[toRow] = from.x[fromRow];
+        to.y[toRow] = from.y[fromRow];
+        to.scaleX[toRow] = from.scaleX[fromRow];
+        to.scaleY[toRow] = from.scaleY[fromRow];
+        to.zIndex[toRow] = from.zIndex[fromRow];
+
+        if (to.sprites != null) {
+            to.r[toRow] = from.r[fromRow];
+            to.g[toRow] = from.g[fromRow];
+            to.b[toRow] = from.b[fromRow];
+            to.a[toRow] = from.a[fromRow];
+            to.sprites[toRow] = from.sprites[fromRow];
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package it.multicoredev.ui.ecs;
+
+import it.multicoredev.ui.GameObject;
+import it.multicoredev.ui.components.Sprite;
+
+import java.util.BitSet;
+
+/**
+ * BSD 3-Clause License
+ * <p>
+ * Copyright (c) 2022, Lorenzo Magni
+ * All rights reserved.
+ * <p>
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * <p>
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * <p>
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * <p>
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+// Fixed size block of entities of the same archetype, every field is a parallel array indexed by row.
+// Systems that write the arrays set changed[row] so that EntityStorage.push copies the values back to the GameObjects.
+public final class Chunk {
+    public static final int CAPACITY = 128;
+
+    final Archetype archetype;
+    int size = 0;
+
+    public final GameObject[] objects = new GameObject[CAPACITY];
+    public final boolean[] changed = new boolean[CAPACITY];
+
+    public final float[] x = new float[CAPACITY];
+    public final float[] y = new float[CAPACITY];
+    public final float[] scaleX = new float[CAPACITY];
+    public final float[] scaleY = new float[CAPACITY];
+    public final int[] zIndex = new int[CAPACITY];
+
+    // Only allocated when the archetype has a SpriteRenderer
+    public final float[] r;
+    public final float[] g;
+    public final float[] b;
+    public final float[] a;
+    public final Sprite[] sprites;
+
+    Chunk(Archetype archetype) {
+        this.archetype = archetype;
+
+        boolean hasSprite = archetype.hasSprite();
+        r = hasSprite ? new float[CAPACITY] : null;
+        g = hasSprite ? new float[CAPACITY] : null;
+        b = hasSprite ? new float[CAPACITY] : null;
+        a = hasSprite ? new float[CAPACITY] : null;
+        sprites = hasSprite ? new Sprite[CAPACITY] : null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public EntityStorage storage() {
+        return archetype.storage();
+    }
+
+    public BitSet mask() {
+        return archetype.mask();
+    }
+
+    public boolean has(Class<?> type) {
+        return archetype.mask().get(ComponentTypes.id(type));
+    }
+
+    boolean isFull() {
+        return size == CAPACITY;
+    }
+
+    // Moves the last row into the given one and returns the object that moved, or null if the row was the last
+    GameObject removeRow(int row) {
+        int last = --size;
+        GameObject moved = null;
+
+        if (row != last) {
+            moved = objects[last];
+            objects[row] = moved;
+            changed[row] = changed[last];
+            x[row] = x[last];
+            y[row] = y[last];
+            scaleX[row] = scaleX[last];
+            scaleY[row] = scaleY[last];
+            zIndex[row] = zIndex[last];
+
+            if (sprites != null) {
+                r[row] = r[last];
+                g[row] = g[last];
+                b[row] = b[last];
+                a[row] = a[last];
+                sprites[row] = sprites[last];
+            }
+        }
+
+        objects[last] = null;
+        changed[last] = false;
+        if (sprites != null) sprites[last] = null;
+
+        return moved;
+    }
+}
@@ -0,0 +1,102 @@
+package it.multicoredev.ui.ecs;
+
+import it.multicoredev.ui.GameObject;
+import it.multicoredev.ui.components.Component;
+
+import java.util.BitSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * BSD 3-Clause License
+ * <p>
+ * Copyright (c) 2022, Lorenzo Magni
+ * All rights reserved.
+ * <p>
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * <p>
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * <p>
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * <p>
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+// Dense ids for the component classes, assigned the first time a class is seen. They are not stable between runs, never save them.
+// Masks are bit sets indexed by id, there is no limit on the number of types.
+public class ComponentTypes {
+    private static final AtomicInteger COUNTER = new AtomicInteger();
+    private static final ClassValue<Integer> IDS = new ClassValue<>() {
+        @Override
+        protected Integer computeValue(Class<?> type) {
+            return COUNTER.getAndIncrement();
+        }
+    };
+
+    // Ids of the class, of every superclass up to Component and of the interfaces they implement,
+    // so a lookup by a parent type or an interface can be answered by a slot
+    private static final ClassValue<int[]> ANCESTORS = new ClassValue<>() {
+        @Override
+        protected int[] computeValue(Class<?> type) {
+            Set<Class<?>> types = new LinkedHashSet<>();
+            for (Class<?> c = type; c != null && Component.class.isAssignableFrom(c); c = c.getSuperclass()) {
+                types.add(c);
+                addInterfaces(c, types);
+            }
+
+            return types.stream().mapToInt(ComponentTypes::id).toArray();
+        }
+    };
+
+    private static void addInterfaces(Class<?> type, Set<Class<?>> types) {
+        for (Class<?> i : type.getInterfaces()) {
+            if (types.add(i)) addInterfaces(i, types);
+        }
+    }
+
+    public static int id(Class<?> type) {
+        return IDS.get(type);
+    }
+
+    public static BitSet mask(Class<?>... types) {
+        BitSet mask = new BitSet();
+        for (Class<?> type : types) mask.set(id(type));
+
+        return mask;
+    }
+
+    public static boolean containsAll(BitSet mask, BitSet required) {
+        for (int id = required.nextSetBit(0); id >= 0; id = required.nextSetBit(id + 1)) {
+            if (!mask.get(id)) return false;
+        }
+
+        return true;
+    }
+
+    public static int[] ancestors(Class<?> type) {
+        return ANCESTORS.get(type);
+    }
+
+    // Includes the parent types of the components, two objects with the same component classes still share a mask.
+    // The set is the live one of the object, copy it before keeping it.
+    public static BitSet mask(GameObject obj) {
+        return obj.getComponentMask();
+    }
+}
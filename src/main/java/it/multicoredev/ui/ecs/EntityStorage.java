@@ -0,0 +1,154 @@
+package it.multicoredev.ui.ecs;
+
+import it.multicoredev.ui.GameObject;
+import it.multicoredev.ui.Transform;
+import it.multicoredev.ui.components.SpriteRenderer;
+import org.joml.Vector4f;
+import org.joml.Vector4fc;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * BSD 3-Clause License
+ * <p>
+ * Copyright (c) 2022, Lorenzo Magni
+ * All rights reserved.
+ * <p>
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * <p>
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * <p>
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * <p>
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+// Optional structure of arrays copy of the scene, grouped by archetype. The GameObjects stay the source of truth
+// for the editor: changes made through them are pulled in, changes made by systems are pushed back.
+public class EntityStorage {
+    private final Map<BitSet, Archetype> archetypes = new HashMap<>();
+    private final List<Archetype> archetypeList = new ArrayList<>();
+
+    public void add(GameObject obj) {
+        if (obj.getChunk() != null) return;
+
+        archetype(ComponentTypes.mask(obj)).add(obj);
+        pull(obj);
+    }
+
+    public void remove(GameObject obj) {
+        Chunk chunk = obj.getChunk();
+        if (chunk != null) chunk.archetype.remove(obj);
+    }
+
+    // Copies the state of the object into the arrays, moving it to another archetype if its components changed
+    public void pull(GameObject obj) {
+        Chunk chunk = obj.getChunk();
+        if (chunk == null) return;
+
+        BitSet mask = ComponentTypes.mask(obj);
+        if (!mask.equals(chunk.archetype.mask())) {
+            chunk.archetype.remove(obj);
+            archetype(mask).add(obj);
+            chunk = obj.getChunk();
+        }
+
+        int row = obj.getRow();
+        Transform transform = obj.transform;
+        chunk.x[row] = transform.position.x;
+        chunk.y[row] = transform.position.y;
+        chunk.scaleX[row] = transform.scale.x;
+        chunk.scaleY[row] = transform.scale.y;
+        chunk.zIndex[row] = obj.zIndex();
+
+        if (chunk.sprites != null) {
+            SpriteRenderer spriteRenderer = obj.getComponent(SpriteRenderer.class);
+            Vector4fc color = spriteRenderer.getColor();
+            chunk.r[row] = color.x();
+            chunk.g[row] = color.y();
+            chunk.b[row] = color.z();
+            chunk.a[row] = color.w();
+            chunk.sprites[row] = spriteRenderer.getSprite();
+        }
+    }
+
+    // Copies the rows systems marked as changed back to their GameObjects
+    public void push() {
+        for (Archetype archetype : archetypeList) {
+            for (Chunk chunk : archetype.chunks()) {
+                for (int row = 0; row < chunk.size; row++) {
+                    if (!chunk.changed[row]) continue;
+                    chunk.changed[row] = false;
+
+                    GameObject obj = chunk.objects[row];
+                    obj.transform.position.set(chunk.x[row], chunk.y[row]);
+                    obj.transform.scale.set(chunk.scaleX[row], chunk.scaleY[row]);
+
+                    if (chunk.sprites != null) {
+                        SpriteRenderer spriteRenderer = obj.getComponent(SpriteRenderer.class);
+                        Vector4fc color = spriteRenderer.getColor();
+                        if (color.x() != chunk.r[row] || color.y() != chunk.g[row] || color.z() != chunk.b[row] || color.w() != chunk.a[row]) {
+                            spriteRenderer.setColor(new Vector4f(chunk.r[row], chunk.g[row], chunk.b[row], chunk.a[row]));
+                        }
+                        if (spriteRenderer.getSprite() != chunk.sprites[row]) spriteRenderer.setSprite(chunk.sprites[row]);
+                    }
+
+                    // Refits the tree proxy and records the move, like any other transform change
+                    if (obj.getScene() != null) obj.getScene().markDirty(obj);
+                }
+            }
+        }
+    }
+
+    // Runs the system on every chunk whose archetype has all the required component types
+    public void forEach(BitSet required, ChunkSystem system) {
+        for (Archetype archetype : archetypeList) {
+            if (!ComponentTypes.containsAll(archetype.mask(), required)) continue;
+
+            List<Chunk> chunks = archetype.chunks();
+            for (int i = 0; i < chunks.size(); i++) system.run(chunks.get(i));
+        }
+    }
+
+    public List<Archetype> archetypes() {
+        return archetypeList;
+    }
+
+    private Archetype archetype(BitSet mask) {
+        Archetype archetype = archetypes.get(mask);
+        if (archetype == null) {
+            // The mask of the object keeps changing, the key is a copy
+            BitSet key = (BitSet) mask.clone();
+            archetype = new Archetype(this, key);
+            archetypes.put(key, archetype);
+            archetypeList.add(archetype);
+        }
+
+        return archetype;
+    }
+
+    @FunctionalInterface
+    public interface ChunkSystem {
+        void run(Chunk chunk);
+    }
+}
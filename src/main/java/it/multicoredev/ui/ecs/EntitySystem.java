@@ -0,0 +1,60 @@
+package it.multicoredev.ui.ecs;
+
+import java.util.BitSet;
+
+/**
+ * BSD 3-Clause License
+ * <p>
+ * Copyright (c) 2022, Lorenzo Magni
+ * All rights reserved.
+ * <p>
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * <p>
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * <p>
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * <p>
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+// Per frame work over every chunk whose archetype has the queried types. The read and write sets tell the scheduler
+// which systems can run at the same time, Transform.class stands for the transform arrays of the chunk.
+// update runs on pool threads and must only touch the rows of its chunk, setting changed[row] after writing them.
+public abstract class EntitySystem {
+    private final BitSet query;
+    private final BitSet reads;
+    private final BitSet writes;
+
+    protected EntitySystem(Class<?>[] query, Class<?>[] reads, Class<?>[] writes) {
+        this.query = ComponentTypes.mask(query);
+        this.reads = ComponentTypes.mask(reads);
+        this.writes = ComponentTypes.mask(writes);
+    }
+
+    public abstract void update(Chunk chunk, float dt);
+
+    public BitSet query() {
+        return query;
+    }
+
+    // Two systems conflict if one writes something the other reads or writes
+    boolean conflicts(EntitySystem other) {
+        return writes.intersects(other.reads) || writes.intersects(other.writes) || other.writes.intersects(reads);
+    }
+}
@@ -0,0 +1,121 @@
+package it.multicoredev.ui.ecs;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * BSD 3-Clause License
+ * <p>
+ * Copyright (c) 2022, Lorenzo Magni
+ * All rights reserved.
+ * <p>
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * <p>
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * <p>
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * <p>
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+// Runs the systems of a scene in stages: a system goes in the stage after the last earlier system it conflicts with,
+// so conflicting systems keep the order they were added in and the result does not depend on the thread timing.
+// The systems of a stage, and every chunk of each system, run in parallel on the common work stealing pool.
+public class SystemScheduler {
+    private final EntityStorage storage;
+    private final List<EntitySystem> systems = new ArrayList<>();
+    private List<List<EntitySystem>> stages = null;
+    // Serial mode runs every system in order on the main thread, for debugging
+    private boolean parallel = true;
+
+    private final List<Chunk> chunks = new ArrayList<>();
+    private final List<ForkJoinTask<?>> tasks = new ArrayList<>();
+
+    public SystemScheduler(EntityStorage storage) {
+        this.storage = storage;
+    }
+
+    public void add(EntitySystem system) {
+        systems.add(system);
+        stages = null;
+    }
+
+    public void remove(EntitySystem system) {
+        if (systems.remove(system)) stages = null;
+    }
+
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    // Runs every system and then copies the rows they changed back to the GameObjects
+    public void update(float dt) {
+        if (stages == null) stages = buildStages();
+
+        for (List<EntitySystem> stage : stages) {
+            if (parallel) runParallel(stage, dt);
+            else runSerial(stage, dt);
+        }
+
+        storage.push();
+    }
+
+    private void runSerial(List<EntitySystem> stage, float dt) {
+        for (EntitySystem system : stage) storage.forEach(system.query(), chunk -> system.update(chunk, dt));
+    }
+
+    private void runParallel(List<EntitySystem> stage, float dt) {
+        for (EntitySystem system : stage) {
+            chunks.clear();
+            storage.forEach(system.query(), chunks::add);
+            for (Chunk chunk : chunks) tasks.add(ForkJoinTask.adapt(() -> system.update(chunk, dt)));
+        }
+
+        try {
+            if (tasks.size() == 1) tasks.get(0).invoke();
+            else if (!tasks.isEmpty()) ForkJoinTask.invokeAll(tasks);
+        } finally {
+            tasks.clear();
+            chunks.clear();
+        }
+    }
+
+    private List<List<EntitySystem>> buildStages() {
+        List<List<EntitySystem>> stages = new ArrayList<>();
+        int[] stageOf = new int[systems.size()];
+
+        for (int i = 0; i < systems.size(); i++) {
+            int stage = 0;
+            for (int j = 0; j < i; j++) {
+                if (systems.get(i).conflicts(systems.get(j))) stage = Math.max(stage, stageOf[j] + 1);
+            }
+
+            stageOf[i] = stage;
+            while (stages.size() <= stage) stages.add(new ArrayList<>());
+            stages.get(stage).add(systems.get(i));
+        }
+
+        return stages;
+    }
+}
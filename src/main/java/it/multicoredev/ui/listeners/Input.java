@@ -0,0 +1,96 @@
+package it.multicoredev.ui.listeners;
+
+import it.multicoredev.ui.Window;
+import it.multicoredev.ui.scenes.Scene;
+import org.joml.Vector4f;
+
+/**
+ * BSD 3-Clause License
+ * <p>
+ * Copyright (c) 2022, Lorenzo Magni
+ * All rights reserved.
+ * <p>
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * <p>
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * <p>
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * <p>
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+public class Input {
+    private static final InputEvents events = new InputEvents(1024);
+    // Two snapshots take turns, the one being read never changes during its frame
+    private static InputSnapshot current = new InputSnapshot();
+    private static InputSnapshot next = new InputSnapshot();
+    private static final Vector4f cursor = new Vector4f();
+
+    private Input() {
+    }
+
+    // GLFW calls back from glfwPollEvents on the main thread, which is also the one that drains
+    static void pushKey(int key, int action) {
+        events.push(InputEvents.KEY, key, action, 0, 0);
+    }
+
+    static void pushButton(int button, int action) {
+        events.push(InputEvents.BUTTON, button, action, 0, 0);
+    }
+
+    static void pushCursor(double x, double y) {
+        events.push(InputEvents.CURSOR, 0, 0, x, y);
+    }
+
+    static void pushScroll(double x, double y) {
+        events.push(InputEvents.SCROLL, 0, 0, x, y);
+    }
+
+    // Replays the events since the last frame into a new snapshot, once per frame after glfwPollEvents
+    public static void update() {
+        next.begin(current, System.nanoTime());
+
+        while (!events.isEmpty()) {
+            switch (events.type()) {
+                case InputEvents.KEY -> next.key(events.code(), events.action());
+                case InputEvents.BUTTON -> next.button(events.code(), events.action(), events.time());
+                case InputEvents.CURSOR -> next.cursor(events.x(), events.y());
+                case InputEvents.SCROLL -> next.scroll(events.x(), events.y());
+            }
+            events.poll();
+        }
+
+        Scene scene = Window.getScene();
+        next.finish(scene != null ? scene.camera() : null, Window.getWidth(), Window.getHeight(), cursor);
+
+        InputSnapshot tmp = current;
+        current = next;
+        next = tmp;
+    }
+
+    // Valid until the next update, the snapshot is reused the frame after
+    public static InputSnapshot snapshot() {
+        return current;
+    }
+
+    // Events lost because the ring was full
+    public static int getDroppedEvents() {
+        return events.getDropped();
+    }
+}
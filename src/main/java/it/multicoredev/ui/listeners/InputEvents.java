@@ -0,0 +1,137 @@
+package it.multicoredev.ui.listeners;
+
+/**
+ * BSD 3-Clause License
+ * <p>
+ * Copyright (c) 2022, Lorenzo Magni
+ * All rights reserved.
+ * <p>
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * <p>
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * <p>
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * <p>
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+final class InputEvents {
+    static final int KEY = 0;
+    static final int BUTTON = 1;
+    static final int CURSOR = 2;
+    static final int SCROLL = 3;
+
+    private final int mask;
+    private final int[] types;
+    // Key or mouse button
+    private final int[] codes;
+    private final int[] actions;
+    private final double[] xs;
+    private final double[] ys;
+    private final long[] times;
+
+    // Read and write counters, only their difference matters so they can overflow
+    private int head = 0;
+    private int tail = 0;
+    private int dropped = 0;
+
+    // The events GLFW reports between two frames, in parallel arrays so that pushing one does not allocate
+    InputEvents(int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) throw new IllegalArgumentException("Capacity must be a power of two");
+
+        mask = capacity - 1;
+        types = new int[capacity];
+        codes = new int[capacity];
+        actions = new int[capacity];
+        xs = new double[capacity];
+        ys = new double[capacity];
+        times = new long[capacity];
+    }
+
+    void push(int type, int code, int action, double x, double y) {
+        long time = System.nanoTime();
+
+        // Only the last position matters and scroll offsets add up, a fast mouse does not fill the ring
+        if (tail != head) {
+            int last = (tail - 1) & mask;
+            if (type == CURSOR && types[last] == CURSOR) {
+                xs[last] = x;
+                ys[last] = y;
+                times[last] = time;
+                return;
+            } else if (type == SCROLL && types[last] == SCROLL) {
+                xs[last] += x;
+                ys[last] += y;
+                times[last] = time;
+                return;
+            }
+        }
+
+        if (tail - head == types.length) {
+            dropped++;
+            return;
+        }
+
+        int i = tail & mask;
+        types[i] = type;
+        codes[i] = code;
+        actions[i] = action;
+        xs[i] = x;
+        ys[i] = y;
+        times[i] = time;
+        tail++;
+    }
+
+    boolean isEmpty() {
+        return tail == head;
+    }
+
+    // The getters read the oldest event, poll moves to the next one
+    int type() {
+        return types[head & mask];
+    }
+
+    int code() {
+        return codes[head & mask];
+    }
+
+    int action() {
+        return actions[head & mask];
+    }
+
+    double x() {
+        return xs[head & mask];
+    }
+
+    double y() {
+        return ys[head & mask];
+    }
+
+    long time() {
+        return times[head & mask];
+    }
+
+    void poll() {
+        head++;
+    }
+
+    int getDropped() {
+        return dropped;
+    }
+}
@@ -0,0 +1,215 @@
+package it.multicoredev.ui.listeners;
+
+import it.multicoredev.ui.Camera;
+import org.joml.Vector4f;
+
+import java.util.Arrays;
+
+import static org.lwjgl.glfw.GLFW.GLFW_PRESS;
+import static org.lwjgl.glfw.GLFW.GLFW_RELEASE;
+
+/**
+ * BSD 3-Clause License
+ * <p>
+ * Copyright (c) 2022, Lorenzo Magni
+ * All rights reserved.
+ * <p>
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * <p>
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * <p>
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * <p>
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+public class InputSnapshot {
+    static final int KEYS = 350;
+    static final int BUTTONS = 9;
+
+    private final boolean[] keysHeld = new boolean[KEYS];
+    private final boolean[] keysPressed = new boolean[KEYS];
+    private final boolean[] keysReleased = new boolean[KEYS];
+    private final boolean[] buttonsHeld = new boolean[BUTTONS];
+    private final boolean[] buttonsPressed = new boolean[BUTTONS];
+    private final boolean[] buttonsReleased = new boolean[BUTTONS];
+    private final long[] buttonPressTimes = new long[BUTTONS];
+
+    private float x;
+    private float y;
+    private float dx;
+    private float dy;
+    private float scrollX;
+    private float scrollY;
+    private float worldX;
+    private float worldY;
+    private boolean dragging;
+    private long time;
+
+    InputSnapshot() {
+    }
+
+    // Starts from the state the previous frame ended in, with no edges
+    void begin(InputSnapshot previous, long time) {
+        System.arraycopy(previous.keysHeld, 0, keysHeld, 0, KEYS);
+        System.arraycopy(previous.buttonsHeld, 0, buttonsHeld, 0, BUTTONS);
+        System.arraycopy(previous.buttonPressTimes, 0, buttonPressTimes, 0, BUTTONS);
+        Arrays.fill(keysPressed, false);
+        Arrays.fill(keysReleased, false);
+        Arrays.fill(buttonsPressed, false);
+        Arrays.fill(buttonsReleased, false);
+
+        x = previous.x;
+        y = previous.y;
+        dx = 0;
+        dy = 0;
+        scrollX = 0;
+        scrollY = 0;
+        worldX = previous.worldX;
+        worldY = previous.worldY;
+        dragging = previous.dragging;
+        this.time = time;
+    }
+
+    // A key pressed and released in the same frame shows both edges
+    void key(int key, int action) {
+        if (key < 0 || key >= KEYS) return;
+
+        if (action == GLFW_PRESS) {
+            if (!keysHeld[key]) keysPressed[key] = true;
+            keysHeld[key] = true;
+        } else if (action == GLFW_RELEASE) {
+            if (keysHeld[key]) keysReleased[key] = true;
+            keysHeld[key] = false;
+        }
+    }
+
+    void button(int button, int action, long time) {
+        if (button < 0 || button >= BUTTONS) return;
+
+        if (action == GLFW_PRESS) {
+            if (!buttonsHeld[button]) buttonsPressed[button] = true;
+            buttonsHeld[button] = true;
+            buttonPressTimes[button] = time;
+        } else if (action == GLFW_RELEASE) {
+            if (buttonsHeld[button]) buttonsReleased[button] = true;
+            buttonsHeld[button] = false;
+            dragging = false;
+        }
+    }
+
+    void cursor(double x, double y) {
+        dx += (float) x - this.x;
+        dy += (float) y - this.y;
+        this.x = (float) x;
+        this.y = (float) y;
+        dragging = buttonsHeld[0] || buttonsHeld[1] || buttonsHeld[2];
+    }
+
+    void scroll(double x, double y) {
+        scrollX += (float) x;
+        scrollY += (float) y;
+    }
+
+    // Unprojects the cursor once for the whole frame
+    void finish(Camera camera, int width, int height, Vector4f tmp) {
+        if (camera == null || width <= 0 || height <= 0) return;
+
+        float ndcX = x / width * 2.0f - 1.0f;
+        float ndcY = (height - y) / height * 2.0f - 1.0f;
+        tmp.set(ndcX, ndcY, 0, 1).mul(camera.getInverseProjection()).mul(camera.getInverseView());
+        worldX = tmp.x;
+        worldY = tmp.y;
+    }
+
+    public boolean isKeyHeld(int key) {
+        return keysHeld[checkKey(key)];
+    }
+
+    public boolean isKeyPressed(int key) {
+        return keysPressed[checkKey(key)];
+    }
+
+    public boolean isKeyReleased(int key) {
+        return keysReleased[checkKey(key)];
+    }
+
+    private static int checkKey(int key) {
+        if (key < 0 || key >= KEYS) throw new IllegalArgumentException("Key out of range");
+        return key;
+    }
+
+    public boolean isButtonHeld(int button) {
+        return button >= 0 && button < BUTTONS && buttonsHeld[button];
+    }
+
+    public boolean isButtonPressed(int button) {
+        return button >= 0 && button < BUTTONS && buttonsPressed[button];
+    }
+
+    public boolean isButtonReleased(int button) {
+        return button >= 0 && button < BUTTONS && buttonsReleased[button];
+    }
+
+    // System.nanoTime of the last press of the button, 0 if it was never pressed
+    public long getButtonPressTime(int button) {
+        return button >= 0 && button < BUTTONS ? buttonPressTimes[button] : 0;
+    }
+
+    public float getX() {
+        return x;
+    }
+
+    public float getY() {
+        return y;
+    }
+
+    public float getDx() {
+        return dx;
+    }
+
+    public float getDy() {
+        return dy;
+    }
+
+    public float getScrollX() {
+        return scrollX;
+    }
+
+    public float getScrollY() {
+        return scrollY;
+    }
+
+    public float getWorldX() {
+        return worldX;
+    }
+
+    public float getWorldY() {
+        return worldY;
+    }
+
+    public boolean isDragging() {
+        return dragging;
+    }
+
+    // System.nanoTime at which the frame drained its events
+    public long getTime() {
+        return time;
+    }
+}
@@ -1,8 +1,5 @@
 package it.multicoredev.ui.listeners;
 
-import static org.lwjgl.glfw.GLFW.GLFW_PRESS;
-import static org.lwjgl.glfw.GLFW.GLFW_RELEASE;
-
 /**
  * BSD 3-Clause License
  * <p>
@@ -34,25 +31,16 @@ import static org.lwjgl.glfw.GLFW.GLFW_RELEASE;
  * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
  * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
-public class KeyListener {
-    private static KeyListener instance;
-    private boolean keyPressed[] = new boolean[350];
 
+public class KeyListener {
     private KeyListener() {
     }
 
-    public static KeyListener get() {
-        if (instance == null) instance = new KeyListener();
-        return instance;
-    }
-
     public static void keyCallback(long window, int key, int scancode, int action, int mods) {
-        if (action == GLFW_PRESS) get().keyPressed[key] = true;
-        else if (action == GLFW_RELEASE) get().keyPressed[key] = false;
+        Input.pushKey(key, action);
     }
 
     public static boolean isKeyPressed(int key) {
-        if (key < 0 || key >= get().keyPressed.length) throw new IllegalArgumentException("Key out of range");
-        return get().keyPressed[key];
+        return Input.snapshot().isKeyHeld(key);
     }
 }
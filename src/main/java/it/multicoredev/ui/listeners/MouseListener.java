@@ -1,11 +1,5 @@
 package it.multicoredev.ui.listeners;
 
-import it.multicoredev.ui.Window;
-import org.joml.Vector4f;
-
-import static org.lwjgl.glfw.GLFW.GLFW_PRESS;
-import static org.lwjgl.glfw.GLFW.GLFW_RELEASE;
-
 /**
  * BSD 3-Clause License
  * <p>
@@ -37,102 +31,61 @@ import static org.lwjgl.glfw.GLFW.GLFW_RELEASE;
  * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
  * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
-public class MouseListener {
-    private static MouseListener instance;
-    private double scrollX = 0;
-    private double scrollY = 0;
-    private double xPos = 0;
-    private double yPos = 0;
-    private double lastX = 0;
-    private double lastY = 0;
-    private boolean[] mouseButtonPressed = new boolean[9];
-    private boolean isDragging;
 
+public class MouseListener {
     private MouseListener() {
     }
 
-    public static MouseListener get() {
-        if (instance == null) instance = new MouseListener();
-        return instance;
-    }
-
     public static void mousePosCallback(long window, double xPos, double yPos) {
-        get().lastX = get().xPos;
-        get().lastY = get().yPos;
-        get().xPos = xPos;
-        get().yPos = yPos;
-        get().isDragging = get().mouseButtonPressed[0] || get().mouseButtonPressed[1] || get().mouseButtonPressed[2];
+        Input.pushCursor(xPos, yPos);
     }
 
     public static void mouseButtonCallback(long window, int button, int action, int mods) {
-        if (button < 0 || button >= get().mouseButtonPressed.length) return;
-
-        if (action == GLFW_PRESS) {
-            get().mouseButtonPressed[button] = true;
-        } else if (action == GLFW_RELEASE) {
-            get().mouseButtonPressed[button] = false;
-            get().isDragging = false;
-        }
+        Input.pushButton(button, action);
     }
 
     public static void mouseScrollCallback(long window, double xOffset, double yOffset) {
-        get().scrollX = xOffset;
-        get().scrollY = yOffset;
-    }
-
-    public static void endFrame() {
-        get().scrollX = 0;
-        get().scrollY = 0;
-        get().lastX = get().xPos;
-        get().lastY = get().yPos;
+        Input.pushScroll(xOffset, yOffset);
     }
 
+    // The getters read the snapshot of the current frame, see Input
     public static float getX() {
-        return (float) get().xPos;
+        return Input.snapshot().getX();
     }
 
     public static float getY() {
-        return (float) get().yPos;
+        return Input.snapshot().getY();
     }
 
     public static float getOrthoX() {
-        float currentX = getX();
-        currentX = (currentX / (float) Window.getWidth()) * 2.0f - 1.0f;
-        Vector4f mat = new Vector4f(currentX, 0, 0, 1);
-        mat.mul(Window.getScene().camera().getInverseProjection()).mul(Window.getScene().camera().getInverseView());
-        return mat.x;
+        return Input.snapshot().getWorldX();
     }
 
     public static float getOrthoY() {
-        float currentY = Window.getHeight() - getY();
-        currentY = (currentY / (float) Window.getHeight()) * 2.0f - 1.0f;
-        Vector4f mat = new Vector4f(0, currentY, 0, 1);
-        mat.mul(Window.getScene().camera().getInverseProjection()).mul(Window.getScene().camera().getInverseView());
-        return mat.y;
+        return Input.snapshot().getWorldY();
     }
 
     public static float getDx() {
-        return (float) (get().xPos - get().lastX);
+        return Input.snapshot().getDx();
     }
 
     public static float getDy() {
-        return (float) (get().yPos - get().lastY);
+        return Input.snapshot().getDy();
     }
 
     public static float getScrollX() {
-        return (float) get().scrollX;
+        return Input.snapshot().getScrollX();
     }
 
     public static float getScrollY() {
-        return (float) get().scrollY;
+        return Input.snapshot().getScrollY();
     }
 
     public static boolean isDragging() {
-        return get().isDragging;
+        return Input.snapshot().isDragging();
     }
 
     public static boolean isMouseButtonDown(int button) {
-        if (button < 0 || button >= get().mouseButtonPressed.length) return false;
-        return get().mouseButtonPressed[button];
+        return Input.snapshot().isButtonHeld(button);
     }
 }
@@ -0,0 +1,582 @@
+package it.multicoredev.ui.physics;
+
+import it.multicoredev.ui.GameObject;
+import it.multicoredev.ui.Transform;
+import it.multicoredev.ui.components.RigidBody;
+import org.joml.Vector3fc;
+
+import java.util.Arrays;
+
+/**
+ * BSD 3-Clause License
+ * <p>
+ * Copyright (c) 2022, Lorenzo Magni
+ * All rights reserved.
+ * <p>
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * <p>
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * <p>
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * <p>
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+// 2D rigid bodies kept in parallel arrays indexed by body. Each step integrates the awake bodies, finds the overlapping
+// pairs with a spatial hash, resolves the contacts with sequential impulses and puts to sleep the islands
+// of touching bodies that stayed still long enough. Sleeping and static bodies are only looked at by the broadphase.
+// Positions are the centers of the bodies, in pixels.
+public class PhysicsWorld {
+    public static final float SLEEP_VELOCITY = 4;
+    public static final float SLEEP_TIME = 0.5f;
+    private static final int ITERATIONS = 8;
+    // Overlap left to the contacts so they persist between steps, and the part of the rest corrected per step
+    private static final float SLOP = 0.5f;
+    private static final float CORRECTION = 0.6f;
+
+    private float gravityX = 0;
+    private float gravityY = -981;
+
+    private int count = 0;
+    private RigidBody[] owners = new RigidBody[256];
+    private byte[] colliders = new byte[256];
+    private boolean[] sleeping = new boolean[256];
+    private float[] x = new float[256];
+    private float[] y = new float[256];
+    private float[] vx = new float[256];
+    private float[] vy = new float[256];
+    private float[] halfWidth = new float[256];
+    private float[] halfHeight = new float[256];
+    private float[] invMass = new float[256];
+    private float[] friction = new float[256];
+    private float[] stillTime = new float[256];
+    private float[] minX = new float[256];
+    private float[] maxX = new float[256];
+    private float[] minY = new float[256];
+    private float[] maxY = new float[256];
+
+    // Awake bodies are hashed every step, static and sleeping ones only when that set changes
+    private float cellSize = 64;
+    private float invCellSize = 1 / cellSize;
+    private final SpatialHash awakeHash = new SpatialHash();
+    private final SpatialHash restingHash = new SpatialHash();
+    private boolean restingDirty = true;
+    private int[] awakeBodies = new int[256];
+    private int[] restingBodies = new int[256];
+
+    private int[] parent = new int[256];
+    private float[] islandTime = new float[256];
+
+    private int contactCount = 0;
+    private int[] contactA = new int[256];
+    private int[] contactB = new int[256];
+    private float[] normalX = new float[256];
+    private float[] normalY = new float[256];
+    private float[] depth = new float[256];
+
+    private long broadphaseNanos = 0;
+    private int pairCount = 0;
+
+    // Adds a body without an owner, the collider type uses the RigidBody constants
+    public int add(int colliderType, float centerX, float centerY, float width, float height, float frictionCoefficient) {
+        if (count == x.length) grow(count * 2);
+
+        int i = count++;
+        owners[i] = null;
+        colliders[i] = (byte) colliderType;
+        sleeping[i] = false;
+        x[i] = centerX;
+        y[i] = centerY;
+        vx[i] = 0;
+        vy[i] = 0;
+        halfWidth[i] = width / 2;
+        halfHeight[i] = height / 2;
+        invMass[i] = (colliderType & RigidBody.STATIC) != 0 ? 0 : 1;
+        friction[i] = frictionCoefficient;
+        stillTime[i] = 0;
+        updateBounds(i);
+        restingDirty = true;
+        return i;
+    }
+
+    public int add(RigidBody body) {
+        Transform transform = body.gameObject().transform;
+        int i = add(body.getColliderType(), transform.position.x + transform.scale.x / 2, transform.position.y + transform.scale.y / 2,
+                transform.scale.x, transform.scale.y, body.getFriction());
+
+        owners[i] = body;
+        vx[i] = body.getVelocity().x();
+        vy[i] = body.getVelocity().y();
+        body.setBody(this, i);
+        return i;
+    }
+
+    public void remove(RigidBody body) {
+        if (body.getWorld() != this) return;
+
+        remove(body.getBody());
+        body.setBody(null, -1);
+    }
+
+    // The last body takes the index of the removed one
+    public void remove(int i) {
+        int last = --count;
+        if (i != last) {
+            owners[i] = owners[last];
+            colliders[i] = colliders[last];
+            sleeping[i] = sleeping[last];
+            x[i] = x[last];
+            y[i] = y[last];
+            vx[i] = vx[last];
+            vy[i] = vy[last];
+            halfWidth[i] = halfWidth[last];
+            halfHeight[i] = halfHeight[last];
+            invMass[i] = invMass[last];
+            friction[i] = friction[last];
+            stillTime[i] = stillTime[last];
+            minX[i] = minX[last];
+            maxX[i] = maxX[last];
+            minY[i] = minY[last];
+            maxY[i] = maxY[last];
+
+            if (owners[i] != null) owners[i].setBody(this, i);
+        }
+
+        owners[last] = null;
+        restingDirty = true;
+    }
+
+    public void step(float dt) {
+        pull();
+
+        // Velocities
+        for (int i = 0; i < count; i++) {
+            if (!isActive(i)) continue;
+
+            vx[i] += gravityX * dt;
+            vy[i] += gravityY * dt;
+        }
+
+        long start = System.nanoTime();
+        findContacts();
+        broadphaseNanos = System.nanoTime() - start;
+
+        for (int iteration = 0; iteration < ITERATIONS; iteration++) {
+            for (int c = 0; c < contactCount; c++) solveVelocity(c);
+        }
+
+        // Positions
+        for (int i = 0; i < count; i++) {
+            if (!isActive(i)) continue;
+
+            x[i] += vx[i] * dt;
+            y[i] += vy[i] * dt;
+        }
+
+        for (int c = 0; c < contactCount; c++) correctPosition(c);
+
+        for (int i = 0; i < count; i++) {
+            if (isActive(i)) updateBounds(i);
+        }
+
+        updateSleep(dt);
+        push();
+    }
+
+    // Takes the changes made to the owners since the last step: moved transforms and set velocities
+    private void pull() {
+        for (int i = 0; i < count; i++) {
+            RigidBody body = owners[i];
+            if (body == null || sleeping[i]) continue;
+
+            Transform transform = body.gameObject().transform;
+            float width = transform.scale.x;
+            float height = transform.scale.y;
+            float centerX = transform.position.x + width / 2;
+            float centerY = transform.position.y + height / 2;
+
+            if (centerX != x[i] || centerY != y[i] || width != halfWidth[i] * 2 || height != halfHeight[i] * 2) {
+                x[i] = centerX;
+                y[i] = centerY;
+                halfWidth[i] = width / 2;
+                halfHeight[i] = height / 2;
+                updateBounds(i);
+                if (invMass[i] == 0) restingDirty = true;
+            }
+
+            Vector3fc velocity = body.getVelocity();
+            vx[i] = velocity.x();
+            vy[i] = velocity.y();
+        }
+    }
+
+    private void push() {
+        for (int i = 0; i < count; i++) {
+            RigidBody body = owners[i];
+            if (body == null || invMass[i] == 0 || sleeping[i]) continue;
+
+            moveOwner(i);
+            body.updateVelocity(vx[i], vy[i]);
+        }
+    }
+
+    // Goes through the scene so the tree proxy, the storage row and the journal follow the body
+    private void moveOwner(int i) {
+        GameObject obj = owners[i].gameObject();
+        float px = x[i] - halfWidth[i], py = y[i] - halfHeight[i];
+        if (obj.transform.position.x == px && obj.transform.position.y == py) return;
+
+        obj.transform.position.set(px, py);
+        if (obj.getScene() != null) obj.getScene().markDirty(obj);
+    }
+
+    private void findContacts() {
+        contactCount = 0;
+        pairCount = 0;
+
+        int awake = 0;
+        int resting = 0;
+        for (int i = 0; i < count; i++) {
+            if (isActive(i)) awakeBodies[awake++] = i;
+            else restingBodies[resting++] = i;
+        }
+
+        awakeHash.build(awakeBodies, awake, minX, maxX, minY, maxY, invCellSize);
+        if (restingDirty) {
+            restingHash.build(restingBodies, resting, minX, maxX, minY, maxY, invCellSize);
+            restingDirty = false;
+        }
+
+        // Awake against awake, every pair shares a cell of the awake hash
+        SpatialHash hash = awakeHash;
+        int buckets = hash.buckets();
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            int end = hash.bucketStart[bucket + 1];
+
+            for (int p = hash.bucketStart[bucket]; p < end; p++) {
+                int a = hash.entryBody[p];
+                int cellX = hash.entryCellX[p];
+                int cellY = hash.entryCellY[p];
+
+                for (int q = p + 1; q < end; q++) {
+                    if (hash.entryCellX[q] == cellX && hash.entryCellY[q] == cellY) test(a, hash.entryBody[q], cellX, cellY);
+                }
+            }
+        }
+
+        // Awake against resting, looking up the cells of each awake body in the resting hash
+        hash = restingHash;
+        for (int k = 0; k < awake; k++) {
+            int a = awakeBodies[k];
+            int x1 = SpatialHash.cell(maxX[a], invCellSize);
+            int y0 = SpatialHash.cell(minY[a], invCellSize);
+            int y1 = SpatialHash.cell(maxY[a], invCellSize);
+
+            for (int cx = SpatialHash.cell(minX[a], invCellSize); cx <= x1; cx++) {
+                for (int cy = y0; cy <= y1; cy++) {
+                    int bucket = hash.bucket(cx, cy);
+                    int end = hash.bucketStart[bucket + 1];
+
+                    for (int p = hash.bucketStart[bucket]; p < end; p++) {
+                        if (hash.entryCellX[p] == cx && hash.entryCellY[p] == cy) test(a, hash.entryBody[p], cx, cy);
+                    }
+                }
+            }
+        }
+    }
+
+    private void test(int a, int b, int cellX, int cellY) {
+        if (minX[b] > maxX[a] || maxX[b] < minX[a] || minY[b] > maxY[a] || maxY[b] < minY[a]) return;
+
+        // Bodies sharing several cells are only paired in the cell holding the corner of their overlap
+        if (SpatialHash.cell(Math.max(minX[a], minX[b]), invCellSize) != cellX) return;
+        if (SpatialHash.cell(Math.max(minY[a], minY[b]), invCellSize) != cellY) return;
+
+        pairCount++;
+        collide(a, b);
+    }
+
+    private void collide(int a, int b) {
+        boolean circleA = (colliders[a] & RigidBody.CIRCLE) != 0;
+        boolean circleB = (colliders[b] & RigidBody.CIRCLE) != 0;
+
+        float dx = x[b] - x[a];
+        float dy = y[b] - y[a];
+
+        if (circleA && circleB) {
+            float radii = radius(a) + radius(b);
+            float distanceSq = dx * dx + dy * dy;
+            if (distanceSq >= radii * radii) return;
+
+            float distance = (float) Math.sqrt(distanceSq);
+            if (distance == 0) addContact(a, b, 0, 1, radii);
+            else addContact(a, b, dx / distance, dy / distance, radii - distance);
+        } else if (!circleA && !circleB) {
+            float overlapX = halfWidth[a] + halfWidth[b] - Math.abs(dx);
+            float overlapY = halfHeight[a] + halfHeight[b] - Math.abs(dy);
+            if (overlapX <= 0 || overlapY <= 0) return;
+
+            if (overlapX < overlapY) addContact(a, b, dx < 0 ? -1 : 1, 0, overlapX);
+            else addContact(a, b, 0, dy < 0 ? -1 : 1, overlapY);
+        } else if (circleB) {
+            collideBoxCircle(a, b, 1);
+        } else {
+            collideBoxCircle(b, a, -1);
+        }
+    }
+
+    // The normal goes from the first body of the pair to the second, sign flips it when the box is the second one
+    private void collideBoxCircle(int box, int circle, float sign) {
+        float dx = x[circle] - x[box];
+        float dy = y[circle] - y[box];
+        float r = radius(circle);
+
+        float closestX = Math.max(-halfWidth[box], Math.min(halfWidth[box], dx));
+        float closestY = Math.max(-halfHeight[box], Math.min(halfHeight[box], dy));
+        int a = sign > 0 ? box : circle;
+        int b = sign > 0 ? circle : box;
+
+        if (closestX == dx && closestY == dy) {
+            // Center inside the box, push out along the closest side
+            float outX = halfWidth[box] - Math.abs(dx);
+            float outY = halfHeight[box] - Math.abs(dy);
+            if (outX < outY) addContact(a, b, (dx < 0 ? -1 : 1) * sign, 0, outX + r);
+            else addContact(a, b, 0, (dy < 0 ? -1 : 1) * sign, outY + r);
+            return;
+        }
+
+        float nx = dx - closestX;
+        float ny = dy - closestY;
+        float distanceSq = nx * nx + ny * ny;
+        if (distanceSq >= r * r) return;
+
+        float distance = (float) Math.sqrt(distanceSq);
+        addContact(a, b, nx / distance * sign, ny / distance * sign, r - distance);
+    }
+
+    private void addContact(int a, int b, float nx, float ny, float penetration) {
+        // Something awake touched a sleeping body, its island wakes up through the next contacts
+        if (sleeping[a]) wake(a);
+        if (sleeping[b]) wake(b);
+
+        if (contactCount == contactA.length) {
+            int size = contactCount * 2;
+            contactA = Arrays.copyOf(contactA, size);
+            contactB = Arrays.copyOf(contactB, size);
+            normalX = Arrays.copyOf(normalX, size);
+            normalY = Arrays.copyOf(normalY, size);
+            depth = Arrays.copyOf(depth, size);
+        }
+
+        int c = contactCount++;
+        contactA[c] = a;
+        contactB[c] = b;
+        normalX[c] = nx;
+        normalY[c] = ny;
+        depth[c] = penetration;
+    }
+
+    private void solveVelocity(int c) {
+        int a = contactA[c];
+        int b = contactB[c];
+        float invMassSum = invMass[a] + invMass[b];
+        if (invMassSum == 0) return;
+
+        float nx = normalX[c];
+        float ny = normalY[c];
+        float rvx = vx[b] - vx[a];
+        float rvy = vy[b] - vy[a];
+
+        float normalVelocity = rvx * nx + rvy * ny;
+        if (normalVelocity > 0) return;
+
+        float j = -normalVelocity / invMassSum;
+        applyImpulse(a, b, nx * j, ny * j);
+
+        // Coulomb friction along the tangent, bounded by the normal impulse
+        rvx = vx[b] - vx[a];
+        rvy = vy[b] - vy[a];
+        float tx = -ny;
+        float ty = nx;
+        float jt = -(rvx * tx + rvy * ty) / invMassSum;
+        float limit = j * (float) Math.sqrt(friction[a] * friction[b]);
+        jt = Math.max(-limit, Math.min(limit, jt));
+        applyImpulse(a, b, tx * jt, ty * jt);
+    }
+
+    private void applyImpulse(int a, int b, float ix, float iy) {
+        vx[a] -= ix * invMass[a];
+        vy[a] -= iy * invMass[a];
+        vx[b] += ix * invMass[b];
+        vy[b] += iy * invMass[b];
+    }
+
+    private void correctPosition(int c) {
+        int a = contactA[c];
+        int b = contactB[c];
+        float invMassSum = invMass[a] + invMass[b];
+        if (invMassSum == 0) return;
+
+        float correction = Math.max(depth[c] - SLOP, 0) * CORRECTION / invMassSum;
+        x[a] -= normalX[c] * correction * invMass[a];
+        y[a] -= normalY[c] * correction * invMass[a];
+        x[b] += normalX[c] * correction * invMass[b];
+        y[b] += normalY[c] * correction * invMass[b];
+    }
+
+    // Touching dynamic bodies form an island, it sleeps once its most recently moving body has been still for SLEEP_TIME
+    private void updateSleep(float dt) {
+        for (int i = 0; i < count; i++) {
+            parent[i] = i;
+            islandTime[i] = Float.MAX_VALUE;
+        }
+
+        for (int c = 0; c < contactCount; c++) {
+            int a = contactA[c];
+            int b = contactB[c];
+            if (invMass[a] != 0 && invMass[b] != 0) union(a, b);
+        }
+
+        float sleepVelocitySq = SLEEP_VELOCITY * SLEEP_VELOCITY;
+        for (int i = 0; i < count; i++) {
+            if (!isActive(i)) continue;
+
+            stillTime[i] = vx[i] * vx[i] + vy[i] * vy[i] < sleepVelocitySq ? stillTime[i] + dt : 0;
+            int root = find(i);
+            islandTime[root] = Math.min(islandTime[root], stillTime[i]);
+        }
+
+        for (int i = 0; i < count; i++) {
+            if (!isActive(i) || islandTime[find(i)] < SLEEP_TIME) continue;
+
+            vx[i] = 0;
+            vy[i] = 0;
+            // Moved before the body is marked asleep, markDirty would otherwise wake it up again
+            if (owners[i] != null) {
+                moveOwner(i);
+                owners[i].updateVelocity(0, 0);
+            }
+            sleeping[i] = true;
+            restingDirty = true;
+        }
+    }
+
+    private int find(int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+
+        return i;
+    }
+
+    private void union(int a, int b) {
+        int rootA = find(a);
+        int rootB = find(b);
+        if (rootA != rootB) parent[rootA] = rootB;
+    }
+
+    public void wake(int i) {
+        if (sleeping[i]) restingDirty = true;
+
+        sleeping[i] = false;
+        stillTime[i] = 0;
+    }
+
+    public boolean isSleeping(int i) {
+        return sleeping[i];
+    }
+
+    private boolean isActive(int i) {
+        return invMass[i] != 0 && !sleeping[i];
+    }
+
+    private float radius(int i) {
+        return Math.min(halfWidth[i], halfHeight[i]);
+    }
+
+    private void updateBounds(int i) {
+        float hw = (colliders[i] & RigidBody.CIRCLE) != 0 ? radius(i) : halfWidth[i];
+        float hh = (colliders[i] & RigidBody.CIRCLE) != 0 ? radius(i) : halfHeight[i];
+        minX[i] = x[i] - hw;
+        maxX[i] = x[i] + hw;
+        minY[i] = y[i] - hh;
+        maxY[i] = y[i] + hh;
+    }
+
+    private void grow(int size) {
+        owners = Arrays.copyOf(owners, size);
+        colliders = Arrays.copyOf(colliders, size);
+        sleeping = Arrays.copyOf(sleeping, size);
+        x = Arrays.copyOf(x, size);
+        y = Arrays.copyOf(y, size);
+        vx = Arrays.copyOf(vx, size);
+        vy = Arrays.copyOf(vy, size);
+        halfWidth = Arrays.copyOf(halfWidth, size);
+        halfHeight = Arrays.copyOf(halfHeight, size);
+        invMass = Arrays.copyOf(invMass, size);
+        friction = Arrays.copyOf(friction, size);
+        stillTime = Arrays.copyOf(stillTime, size);
+        minX = Arrays.copyOf(minX, size);
+        maxX = Arrays.copyOf(maxX, size);
+        minY = Arrays.copyOf(minY, size);
+        maxY = Arrays.copyOf(maxY, size);
+        parent = Arrays.copyOf(parent, size);
+        islandTime = Arrays.copyOf(islandTime, size);
+        awakeBodies = Arrays.copyOf(awakeBodies, size);
+        restingBodies = Arrays.copyOf(restingBodies, size);
+    }
+
+    // Bodies should be smaller than a few cells, larger ones are hashed in every cell they cover
+    public void setCellSize(float cellSize) {
+        this.cellSize = cellSize;
+        this.invCellSize = 1 / cellSize;
+        restingDirty = true;
+    }
+
+    public void setGravity(float x, float y) {
+        gravityX = x;
+        gravityY = y;
+    }
+
+    // Sets the velocity of a body and wakes it up
+    public void setVelocity(int i, float velocityX, float velocityY) {
+        vx[i] = velocityX;
+        vy[i] = velocityY;
+        wake(i);
+    }
+
+    public int getBodyCount() {
+        return count;
+    }
+
+    public int getContactCount() {
+        return contactCount;
+    }
+
+    // Candidate pairs the broadphase found in the last step
+    public int getPairCount() {
+        return pairCount;
+    }
+
+    // Time the last step spent finding the contacts, broadphase and narrowphase
+    public long getBroadphaseNanos() {
+        return broadphaseNanos;
+    }
+}
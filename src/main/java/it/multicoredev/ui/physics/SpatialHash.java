@@ -0,0 +1,105 @@
+package it.multicoredev.ui.physics;
+
+import java.util.Arrays;
+
+/**
+ * BSD 3-Clause License
+ * <p>
+ * Copyright (c) 2022, Lorenzo Magni
+ * All rights reserved.
+ * <p>
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * <p>
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * <p>
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * <p>
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+// Uniform grid whose cells are hashed into buckets, rebuilt from scratch with a counting sort so the entries
+// of a bucket are contiguous. Each entry is a body and one of the cells its bounds cover, cells can share a bucket.
+class SpatialHash {
+    int[] bucketStart = new int[2];
+    int[] entryBody = new int[0];
+    int[] entryCellX = new int[0];
+    int[] entryCellY = new int[0];
+    int mask = 0;
+
+    void build(int[] bodies, int count, float[] minX, float[] maxX, float[] minY, float[] maxY, float invCellSize) {
+        int entries = 0;
+        for (int k = 0; k < count; k++) {
+            int i = bodies[k];
+            entries += (cell(maxX[i], invCellSize) - cell(minX[i], invCellSize) + 1) * (cell(maxY[i], invCellSize) - cell(minY[i], invCellSize) + 1);
+        }
+
+        if (entryBody.length < entries) {
+            entryBody = new int[entries * 2];
+            entryCellX = new int[entries * 2];
+            entryCellY = new int[entries * 2];
+        }
+
+        int buckets = Integer.highestOneBit(Math.max(entries, 8)) * 2;
+        if (bucketStart.length != buckets + 1) bucketStart = new int[buckets + 1];
+        else Arrays.fill(bucketStart, 0);
+        mask = buckets - 1;
+
+        // Count the entries of each bucket, then turn the counts into the end of each bucket
+        for (int k = 0; k < count; k++) {
+            int i = bodies[k];
+            int x1 = cell(maxX[i], invCellSize);
+            int y0 = cell(minY[i], invCellSize);
+            int y1 = cell(maxY[i], invCellSize);
+            for (int cx = cell(minX[i], invCellSize); cx <= x1; cx++) {
+                for (int cy = y0; cy <= y1; cy++) bucketStart[bucket(cx, cy)]++;
+            }
+        }
+        for (int b = 1; b < buckets; b++) bucketStart[b] += bucketStart[b - 1];
+        bucketStart[buckets] = entries;
+
+        // Filling backwards moves each bucket end back to its start and keeps the bodies in order within a bucket
+        for (int k = count - 1; k >= 0; k--) {
+            int i = bodies[k];
+            int x1 = cell(maxX[i], invCellSize);
+            int y0 = cell(minY[i], invCellSize);
+            int y1 = cell(maxY[i], invCellSize);
+            for (int cx = cell(minX[i], invCellSize); cx <= x1; cx++) {
+                for (int cy = y0; cy <= y1; cy++) {
+                    int position = --bucketStart[bucket(cx, cy)];
+                    entryBody[position] = i;
+                    entryCellX[position] = cx;
+                    entryCellY[position] = cy;
+                }
+            }
+        }
+    }
+
+    int buckets() {
+        return bucketStart.length - 1;
+    }
+
+    int bucket(int cx, int cy) {
+        int h = cx * 0x9E3779B1 ^ cy * 0x85EBCA77;
+        return (h ^ (h >>> 15)) & mask;
+    }
+
+    static int cell(float coordinate, float invCellSize) {
+        return (int) Math.floor(coordinate * invCellSize);
+    }
+}
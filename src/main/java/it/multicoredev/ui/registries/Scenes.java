@@ -54,9 +54,19 @@ public enum Scenes {
     }
 
     public String getPath() {
+        return "saves/" + id + ".scene";
+    }
+
+    // Levels saved before the binary format, still used for import and export
+    public String getJsonPath() {
         return "saves/" + id + ".json";
     }
 
+    // Levels split into chunks for streaming, one file per chunk
+    public String getChunkDirectory() {
+        return "saves/" + id;
+    }
+
     public Scene getInstance() {
         try {
             return sceneClass.getDeclaredConstructor().newInstance();
@@ -1,5 +1,7 @@
 package it.multicoredev.ui.registries;
 
+import java.util.List;
+
 /**
  * BSD 3-Clause License
  * <p>
@@ -36,4 +38,14 @@ public class SpriteSheets {
     public static final String DECORATIONS_AND_BLOCKS = "assets/textures/spritesheets/decorations_and_blocks.png";
     public static final String ICONS = "assets/textures/spritesheets/icons.png";
     public static final String PIPES = "assets/textures/spritesheets/pipes.png";
+
+    public static final List<Definition> DEFINITIONS = List.of(
+            new Definition(SPRITESHEET, 16, 16, 26, 0),
+            new Definition(DECORATIONS_AND_BLOCKS, 16, 16, 80, 0),
+            new Definition(ICONS, 16, 16, 16, 0),
+            new Definition(PIPES, 16, 16, 6, 0)
+    );
+
+    public record Definition(String path, int spriteWidth, int spriteHeight, int numSprites, int spacing) {
+    }
 }
@@ -0,0 +1,138 @@
+package it.multicoredev.ui.renderer;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+import static it.multicoredev.App.LOGGER;
+
+/**
+ * BSD 3-Clause License
+ * <p>
+ * Copyright (c) 2022, Lorenzo Magni
+ * All rights reserved.
+ * <p>
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * <p>
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * <p>
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * <p>
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+public class GLExecutor implements Executor {
+    private static final GLExecutor INSTANCE = new GLExecutor();
+
+    private static Thread glThread = null;
+    private static final long POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static long budgetNanos = TimeUnit.MILLISECONDS.toNanos(2);
+    private final LinkedBlockingQueue<Runnable> tasks = new LinkedBlockingQueue<>();
+
+    private GLExecutor() {
+    }
+
+    public static GLExecutor get() {
+        return INSTANCE;
+    }
+
+    // Must be called from the thread that owns the OpenGL context
+    public static void init() {
+        glThread = Thread.currentThread();
+    }
+
+    public static boolean isGLThread() {
+        return Thread.currentThread() == glThread;
+    }
+
+    public static void setBudget(long time, TimeUnit unit) {
+        budgetNanos = unit.toNanos(time);
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        tasks.add(task);
+    }
+
+    // Runs the task right away when already on the GL thread, queues it otherwise
+    public static void run(Runnable task) {
+        if (isGLThread()) task.run();
+        else INSTANCE.execute(task);
+    }
+
+    public static <T> CompletableFuture<T> supply(Supplier<T> supplier) {
+        if (!isGLThread()) return CompletableFuture.supplyAsync(supplier, INSTANCE);
+
+        try {
+            return CompletableFuture.completedFuture(supplier.get());
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    // Runs queued tasks until the per-frame budget is spent. Must be called from the GL thread.
+    public static void process() {
+        long start = System.nanoTime();
+
+        Runnable task;
+        while ((task = INSTANCE.tasks.poll()) != null) {
+            runTask(task);
+            if (System.nanoTime() - start >= budgetNanos) break;
+        }
+    }
+
+    // Waits for the future, running GL tasks meanwhile when called from the GL thread so it cannot deadlock
+    public static <T> T await(CompletableFuture<T> future) {
+        if (isGLThread()) awaitUntil(future::isDone);
+        return future.join();
+    }
+
+    public static void awaitUntil(BooleanSupplier condition) {
+        // Nothing to run off the GL thread, check again every millisecond without holding a core
+        if (!isGLThread()) {
+            while (!condition.getAsBoolean()) {
+                LockSupport.parkNanos(POLL_NANOS);
+                if (Thread.currentThread().isInterrupted()) return;
+            }
+            return;
+        }
+
+        try {
+            while (!condition.getAsBoolean()) {
+                Runnable task = INSTANCE.tasks.poll(1, TimeUnit.MILLISECONDS);
+                if (task != null) runTask(task);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.error("Interrupted while waiting on the GL thread", e);
+        }
+    }
+
+    private static void runTask(Runnable task) {
+        try {
+            task.run();
+        } catch (RuntimeException e) {
+            LOGGER.error("Error while running a GL task", e);
+        }
+    }
+}
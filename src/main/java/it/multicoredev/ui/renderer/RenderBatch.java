@@ -1,16 +1,18 @@
 package it.multicoredev.ui.renderer;
 
+import it.multicoredev.ui.Transform;
 import it.multicoredev.ui.Window;
 import it.multicoredev.ui.components.SpriteRenderer;
 import it.multicoredev.utils.AssetPool;
 import it.multicoredev.ui.registries.Shaders;
 import org.joml.Vector2f;
-import org.joml.Vector4f;
+import org.joml.Vector4fc;
 
 import java.util.ArrayList;
 import java.util.List;
 
 import static org.lwjgl.opengl.ARBVertexArrayObject.glBindVertexArray;
+import static org.lwjgl.opengl.ARBVertexArrayObject.glDeleteVertexArrays;
 import static org.lwjgl.opengl.ARBVertexArrayObject.glGenVertexArrays;
 import static org.lwjgl.opengl.GL20.*;
 
@@ -67,12 +69,14 @@ public class RenderBatch implements Comparable<RenderBatch> {
     private SpriteRenderer[] sprites;
     private int numSprites;
     private boolean hasRoom;
+    private boolean rebufferData = false;
     private float[] vertices;
     private int[] texSlots = {0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15};
 
     private final List<Texture> textures = new ArrayList<>();
     private int vaoId;
     private int vboId;
+    private int eboId;
     private int maxBatchSize;
     private Shader shader;
     private int zIndex;
@@ -81,7 +85,7 @@ public class RenderBatch implements Comparable<RenderBatch> {
         this.maxBatchSize = maxBatchSize;
         this.zIndex = zIndex;
 
-        shader = AssetPool.getShader(Shaders.DEFAULT);
+        shader = AssetPool.acquireShader(Shaders.DEFAULT);
 
         sprites = new SpriteRenderer[maxBatchSize];
         vertices = new float[maxBatchSize * VERTEX_SIZE * 4]; // 4 vertices per quad
@@ -101,7 +105,7 @@ public class RenderBatch implements Comparable<RenderBatch> {
         glBufferData(GL_ARRAY_BUFFER, (long) vertices.length * Float.BYTES, GL_DYNAMIC_DRAW);
 
         // Create and upload indices buffer
-        int eboId = glGenBuffers();
+        eboId = glGenBuffers();
         int[] indices = generateIndices();
         glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, eboId);
         glBufferData(GL_ELEMENT_ARRAY_BUFFER, indices, GL_STATIC_DRAW);
@@ -123,6 +127,7 @@ public class RenderBatch implements Comparable<RenderBatch> {
     public void addSprite(SpriteRenderer sprite) {
         int idx = numSprites;
         sprites[idx] = sprite;
+        sprite.setBatch(this, idx);
         numSprites++;
 
         if (sprite.getTexture() != null) {
@@ -137,13 +142,42 @@ public class RenderBatch implements Comparable<RenderBatch> {
         }
     }
 
+    // The last sprite takes the place of the removed one, so the quads stay packed
+    public boolean removeSprite(SpriteRenderer sprite) {
+        if (sprite.getBatch() != this) return false;
+
+        int i = sprite.getBatchIndex();
+        numSprites--;
+        sprites[i] = sprites[numSprites];
+        sprites[numSprites] = null;
+        sprite.setBatch(null, -1);
+
+        if (i < numSprites) {
+            sprites[i].setBatch(this, i);
+            loadVertexProperties(i);
+        }
+
+        hasRoom = true;
+        rebufferData = true;
+        return true;
+    }
+
     public void render() {
-        boolean rebufferData = false;
+        render(1);
+    }
+
+    // Alpha places the sprites between their transform before the last simulation step (0) and their current one (1)
+    public void render(float alpha) {
         for (int i = 0; i < numSprites; i++) {
             SpriteRenderer renderer = sprites[i];
-            if (renderer.isDirty()) {
-                loadVertexProperties(i);
+            Transform previous = renderer.gameObject().getPreviousTransform();
+            boolean moving = alpha < 1 && previous != null && !previous.equals(renderer.gameObject().transform);
+
+            // An interpolated sprite that stopped moving is reloaded once more at its final position
+            if (renderer.isDirty() || moving || renderer.isInterpolated()) {
+                loadVertexProperties(i, moving ? alpha : 1);
                 renderer.setClean();
+                renderer.setInterpolated(moving);
                 rebufferData = true;
             }
         }
@@ -151,6 +185,7 @@ public class RenderBatch implements Comparable<RenderBatch> {
         if (rebufferData) {
             glBindBuffer(GL_ARRAY_BUFFER, vboId);
             glBufferSubData(GL_ARRAY_BUFFER, 0, vertices);
+            rebufferData = false;
         }
 
         // Use shader
@@ -187,6 +222,15 @@ public class RenderBatch implements Comparable<RenderBatch> {
         shader.detach();
     }
 
+    public void destroy() {
+        glDeleteBuffers(vboId);
+        glDeleteBuffers(eboId);
+        glDeleteVertexArrays(vaoId);
+
+        for (int i = 0; i < numSprites; i++) sprites[i].setBatch(null, -1);
+        AssetPool.releaseShader(shader);
+    }
+
     public boolean hasRoom() {
         return hasRoom;
     }
@@ -230,11 +274,22 @@ public class RenderBatch implements Comparable<RenderBatch> {
     }
 
     private void loadVertexProperties(int idx) {
+        loadVertexProperties(idx, 1);
+    }
+
+    private void loadVertexProperties(int idx, float alpha) {
         SpriteRenderer sprite = sprites[idx];
+        Transform transform = sprite.gameObject().transform;
+        Transform previous = alpha < 1 ? sprite.gameObject().getPreviousTransform() : transform;
+
+        float x = previous.position.x + (transform.position.x - previous.position.x) * alpha;
+        float y = previous.position.y + (transform.position.y - previous.position.y) * alpha;
+        float scaleX = previous.scale.x + (transform.scale.x - previous.scale.x) * alpha;
+        float scaleY = previous.scale.y + (transform.scale.y - previous.scale.y) * alpha;
 
         int offset = idx * VERTEX_SIZE * 4;
 
-        Vector4f color = sprite.getColor();
+        Vector4fc color = sprite.getColor();
         Vector2f[] texCoords = sprite.getTexCoords();
 
         int texId = 0;
@@ -261,14 +316,14 @@ public class RenderBatch implements Comparable<RenderBatch> {
             }
 
             // Load position
-            vertices[offset] = sprite.gameObject().transform.position.x + (xAdd * sprite.gameObject().transform.scale.x);
-            vertices[offset + 1] = sprite.gameObject().transform.position.y + (yAdd * sprite.gameObject().transform.scale.y);
+            vertices[offset] = x + (xAdd * scaleX);
+            vertices[offset + 1] = y + (yAdd * scaleY);
 
             // Load color
-            vertices[offset + 2] = color.x;
-            vertices[offset + 3] = color.y;
-            vertices[offset + 4] = color.z;
-            vertices[offset + 5] = color.w;
+            vertices[offset + 2] = color.x();
+            vertices[offset + 3] = color.y();
+            vertices[offset + 4] = color.z();
+            vertices[offset + 5] = color.w();
 
             // Load texture coordinates
             vertices[offset + 6] = texCoords[i].x;
@@ -69,7 +69,21 @@ public class Renderer {
         }
     }
 
+    public void remove(GameObject obj) {
+        SpriteRenderer sprite = obj.getComponent(SpriteRenderer.class);
+        if (sprite != null && sprite.getBatch() != null) sprite.getBatch().removeSprite(sprite);
+    }
+
     public void render() {
-        batches.forEach(RenderBatch::render);
+        render(1);
+    }
+
+    public void render(float alpha) {
+        for (RenderBatch batch : batches) batch.render(alpha);
+    }
+
+    public void destroy() {
+        batches.forEach(RenderBatch::destroy);
+        batches.clear();
     }
 }
@@ -49,39 +49,51 @@ public class Shader {
 
     private int shaderProgramId;
     private boolean inUse = false;
+    private transient int references = 0;
     private String vertexSrc;
     private String fragmentSrc;
 
     public Shader(File file) {
+        this(file, read(file));
+    }
+
+    public Shader(File file, String src) {
         this.file = file;
         path = file.getPath();
 
-        try {
-            String src = new String(Files.readAllBytes(this.file.toPath()));
-            String[] splitSrc = src.split("(#type)( )+([a-zA-Z]+)");
+        String[] splitSrc = src.split("(#type)( )+([a-zA-Z]+)");
 
-            int idx = src.indexOf("#type") + 6;
-            int eol = src.indexOf("\n", idx);
-            String firstPattern = src.substring(idx, eol).trim();
+        int idx = src.indexOf("#type") + 6;
+        int eol = src.indexOf("\n", idx);
+        String firstPattern = src.substring(idx, eol).trim();
 
-            idx = src.indexOf("#type", eol) + 6;
-            eol = src.indexOf("\n", idx);
-            String secondPattern = src.substring(idx, eol).trim();
+        idx = src.indexOf("#type", eol) + 6;
+        eol = src.indexOf("\n", idx);
+        String secondPattern = src.substring(idx, eol).trim();
 
-            if (firstPattern.equals("vertex")) vertexSrc = splitSrc[1];
-            else if (firstPattern.equals("fragment")) fragmentSrc = splitSrc[1];
-            else throw new RuntimeException("Unexpected token '" + firstPattern + "'");
+        if (firstPattern.equals("vertex")) vertexSrc = splitSrc[1];
+        else if (firstPattern.equals("fragment")) fragmentSrc = splitSrc[1];
+        else throw new RuntimeException("Unexpected token '" + firstPattern + "'");
+
+        if (secondPattern.equals("vertex")) vertexSrc = splitSrc[2];
+        else if (secondPattern.equals("fragment")) fragmentSrc = splitSrc[2];
+        else throw new RuntimeException("Unexpected token '" + secondPattern + "'");
+    }
 
-            if (secondPattern.equals("vertex")) vertexSrc = splitSrc[2];
-            else if (secondPattern.equals("fragment")) fragmentSrc = splitSrc[2];
-            else throw new RuntimeException("Unexpected token '" + secondPattern + "'");
+    private static String read(File file) {
+        try {
+            return new String(Files.readAllBytes(file.toPath()));
         } catch (IOException e) {
-            LOGGER.error("Could not open file for shaders: '" + this.file.getName() + "'", e);
+            LOGGER.error("Could not open file for shaders: '" + file.getName() + "'", e);
             System.exit(-1);
+            return null;
         }
     }
 
     public void compileAndLink() {
+        shaderProgramId = ShaderCache.load(vertexSrc, fragmentSrc);
+        if (shaderProgramId != 0) return;
+
         // Load and compile the vertex shader
         int vertexId = glCreateShader(GL_VERTEX_SHADER);
 
@@ -118,6 +130,7 @@ public class Shader {
         shaderProgramId = glCreateProgram();
         glAttachShader(shaderProgramId, vertexId);
         glAttachShader(shaderProgramId, fragmentId);
+        ShaderCache.prepare(shaderProgramId);
         glLinkProgram(shaderProgramId);
 
         // Check for linking errors
@@ -128,6 +141,29 @@ public class Shader {
             LOGGER.error(glGetProgramInfoLog(shaderProgramId, len));
             System.exit(-1);
         }
+
+        ShaderCache.store(shaderProgramId, vertexSrc, fragmentSrc);
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public void acquire() {
+        references++;
+    }
+
+    public void release() {
+        if (references > 0) references--;
+    }
+
+    public int getReferences() {
+        return references;
+    }
+
+    public void delete() {
+        glDeleteProgram(shaderProgramId);
+        shaderProgramId = 0;
     }
 
     public void use() {
@@ -0,0 +1,180 @@
+package it.multicoredev.ui.renderer;
+
+import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GLCapabilities;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+import static it.multicoredev.App.LOGGER;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.*;
+import static org.lwjgl.opengl.GL41C.*;
+import static org.lwjgl.system.MemoryUtil.memAlloc;
+import static org.lwjgl.system.MemoryUtil.memFree;
+
+/**
+ * BSD 3-Clause License
+ * <p>
+ * Copyright (c) 2022, Lorenzo Magni
+ * All rights reserved.
+ * <p>
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * <p>
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * <p>
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * <p>
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+public class ShaderCache {
+    // Entry
+    // ======
+    // Binary format    |   Program binary
+    // int              |   byte[]
+    // ======
+    private static Path directory = Path.of("cache", "shaders");
+    private static boolean enabled = true;
+    private static Boolean supported = null;
+
+    public static Path getDirectory() {
+        return directory;
+    }
+
+    public static void setDirectory(Path directory) {
+        ShaderCache.directory = directory;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        ShaderCache.enabled = enabled;
+    }
+
+    // Returns a linked program from the cache, or 0 if there is none or the driver rejects it
+    static int load(String vertexSrc, String fragmentSrc) {
+        if (!isAvailable()) return 0;
+
+        Path file = entryFile(vertexSrc, fragmentSrc);
+        if (!Files.isRegularFile(file)) return 0;
+
+        try (FileChannel channel = FileChannel.open(file, READ)) {
+            if (channel.size() <= Integer.BYTES) return 0;
+
+            MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int format = data.getInt(0);
+
+            int programId = glCreateProgram();
+            glProgramBinary(programId, format, data.slice(Integer.BYTES, data.capacity() - Integer.BYTES));
+
+            if (glGetProgrami(programId, GL_LINK_STATUS) == GL_FALSE) {
+                // Usually a driver update, compile from source and replace the entry
+                LOGGER.info("Cached shader binary rejected by the driver, compiling from source");
+                glDeleteProgram(programId);
+                return 0;
+            }
+
+            return programId;
+        } catch (IOException e) {
+            LOGGER.warn("Cannot read cached shader binary: " + file, e);
+            return 0;
+        }
+    }
+
+    // Must be called before linking, some drivers only keep the binary when asked to
+    static void prepare(int programId) {
+        if (isAvailable()) glProgramParameteri(programId, GL_PROGRAM_BINARY_RETRIEVABLE_HINT, GL_TRUE);
+    }
+
+    static void store(int programId, String vertexSrc, String fragmentSrc) {
+        if (!isAvailable()) return;
+
+        int length = glGetProgrami(programId, GL_PROGRAM_BINARY_LENGTH);
+        if (length <= 0) return;
+
+        ByteBuffer data = memAlloc(Integer.BYTES + length);
+        try {
+            int[] format = new int[1];
+            glGetProgramBinary(programId, null, format, data.slice(Integer.BYTES, length));
+            data.putInt(0, format[0]);
+
+            Files.createDirectories(directory);
+
+            Path file = entryFile(vertexSrc, fragmentSrc);
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+
+            try (FileChannel channel = FileChannel.open(tmp, CREATE, WRITE, TRUNCATE_EXISTING)) {
+                while (data.hasRemaining()) channel.write(data);
+            }
+
+            Files.move(tmp, file, REPLACE_EXISTING, ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOGGER.warn("Cannot cache shader binary", e);
+        } finally {
+            memFree(data);
+        }
+    }
+
+    private static boolean isAvailable() {
+        if (!enabled) return false;
+
+        if (supported == null) {
+            GLCapabilities caps = GL.getCapabilities();
+            supported = (caps.OpenGL41 || caps.GL_ARB_get_program_binary) && glGetInteger(GL_NUM_PROGRAM_BINARY_FORMATS) > 0;
+        }
+
+        return supported;
+    }
+
+    // Binaries are only valid for the exact sources on the exact driver that produced them
+    private static Path entryFile(String vertexSrc, String fragmentSrc) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            update(digest, vertexSrc);
+            update(digest, fragmentSrc);
+            update(digest, glGetString(GL_VENDOR));
+            update(digest, glGetString(GL_RENDERER));
+            update(digest, glGetString(GL_VERSION));
+
+            return directory.resolve(HexFormat.of().formatHex(digest.digest()) + ".bin");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        byte[] bytes = (value == null ? "" : value).getBytes(StandardCharsets.UTF_8);
+
+        // Length prefixed, so moving text from one source to the other changes the key
+        digest.update(new byte[]{(byte) (bytes.length >>> 24), (byte) (bytes.length >>> 16), (byte) (bytes.length >>> 8), (byte) bytes.length});
+        digest.update(bytes);
+    }
+}
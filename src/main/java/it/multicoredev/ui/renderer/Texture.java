@@ -1,15 +1,17 @@
 package it.multicoredev.ui.renderer;
 
+import com.google.gson.*;
+import com.google.gson.annotations.JsonAdapter;
+import it.multicoredev.utils.AssetPool;
 import org.lwjgl.BufferUtils;
 
 import java.io.File;
+import java.lang.reflect.Type;
 import java.nio.ByteBuffer;
-import java.nio.IntBuffer;
 
 import static it.multicoredev.App.LOGGER;
 import static org.lwjgl.opengl.ARBInternalformatQuery2.GL_TEXTURE_2D;
 import static org.lwjgl.opengl.GL11C.*;
-import static org.lwjgl.stb.STBImage.*;
 
 /**
  * BSD 3-Clause License
@@ -42,12 +44,23 @@ import static org.lwjgl.stb.STBImage.*;
  * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
  * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
+@JsonAdapter(Texture.JsonAdapter.class)
 public class Texture {
+    private static final ByteBuffer PLACEHOLDER_PIXEL = BufferUtils.createByteBuffer(4)
+            .put((byte) 0xFF).put((byte) 0xFF).put((byte) 0xFF).put((byte) 0xFF)
+            .flip();
+
     private String path;
 
     private int id;
     private int width;
     private int height;
+    private transient int channels;
+    private transient volatile boolean loaded = false;
+    // Set when the image cannot be decoded, the texture keeps its placeholder and is not loaded again
+    private transient volatile boolean failed = false;
+    private transient int references = 0;
+    private transient long lastUsed = 0;
 
     public Texture() {
 
@@ -58,6 +71,10 @@ public class Texture {
     }
 
     public void bind() {
+        // Evicted textures come back with a placeholder until they are decoded again
+        if (id == 0 && path != null) AssetPool.getTexture(path);
+
+        lastUsed = System.nanoTime();
         glBindTexture(GL_TEXTURE_2D, id);
     }
 
@@ -65,6 +82,10 @@ public class Texture {
         glBindTexture(GL_TEXTURE_2D, 0);
     }
 
+    public String getPath() {
+        return path;
+    }
+
     public int getId() {
         return id;
     }
@@ -77,11 +98,102 @@ public class Texture {
         return height;
     }
 
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    public boolean isFailed() {
+        return failed;
+    }
+
+    void setFailed() {
+        failed = true;
+    }
+
+    public boolean isResident() {
+        return id != 0;
+    }
+
+    // Size of the image on the GPU in bytes, 0 until it is uploaded
+    public long getSize() {
+        return loaded ? (long) width * height * channels : 0;
+    }
+
+    public void acquire() {
+        references++;
+    }
+
+    public void release() {
+        if (references > 0) references--;
+    }
+
+    public int getReferences() {
+        return references;
+    }
+
+    public long getLastUsed() {
+        return lastUsed;
+    }
+
+    public void delete() {
+        if (id != 0) glDeleteTextures(id);
+
+        id = 0;
+        loaded = false;
+    }
+
     public void init(File file) {
+        create(file);
+
+        TextureLoader.DecodedImage image = TextureLoader.decode(this, file);
+        if (image != null) {
+            upload(image.width(), image.height(), image.channels(), image.pixels());
+            image.free();
+        } else {
+            failed = true;
+        }
+    }
+
+    void create(File file) {
         path = file.getPath();
 
-        // Generate texture on GPU
-        id = glGenTextures();
+        // Generate texture on GPU, a texture created again must not leak its previous name
+        if (id != 0) glDeleteTextures(id);
+        id = generate();
+
+        // Until the real image is uploaded the texture holds a single white pixel
+        glTexImage2D(GL_TEXTURE_2D, 0, GL_RGBA, 1, 1, 0, GL_RGBA, GL_UNSIGNED_BYTE, PLACEHOLDER_PIXEL);
+        // Sprite sheets built on a texture that failed divide by its size
+        if (!loaded) {
+            width = 1;
+            height = 1;
+        }
+    }
+
+    void upload(int width, int height, int channels, ByteBuffer pixels) {
+        int format = format(channels);
+        if (format == -1 || id == 0) return;
+
+        glBindTexture(GL_TEXTURE_2D, id);
+        glTexImage2D(GL_TEXTURE_2D, 0, format, width, height, 0, format, GL_UNSIGNED_BYTE, pixels);
+        setLoaded(width, height, channels);
+    }
+
+    // Storage for an image uploaded in parts, it takes the place of the placeholder once complete
+    static int allocate(int width, int height, int format) {
+        int target = generate();
+        glTexImage2D(GL_TEXTURE_2D, 0, format, width, height, 0, format, GL_UNSIGNED_BYTE, (ByteBuffer) null);
+        return target;
+    }
+
+    void replace(int target, int width, int height, int channels) {
+        if (id != 0) glDeleteTextures(id);
+        id = target;
+        setLoaded(width, height, channels);
+    }
+
+    private static int generate() {
+        int id = glGenTextures();
         glBindTexture(GL_TEXTURE_2D, id);
 
         // Set the texture params
@@ -93,30 +205,35 @@ public class Texture {
         // When shrinking the image, pixelate
         glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAG_FILTER, GL_NEAREST);
 
-        // Load image, create texture and generate mipmaps
-        IntBuffer width = BufferUtils.createIntBuffer(1);
-        IntBuffer height = BufferUtils.createIntBuffer(1);
-        IntBuffer channels = BufferUtils.createIntBuffer(1);
+        return id;
+    }
 
-        stbi_set_flip_vertically_on_load(true);
-        ByteBuffer image = stbi_load(file.getPath(), width, height, channels, 0);
+    private void setLoaded(int width, int height, int channels) {
+        this.width = width;
+        this.height = height;
+        this.channels = channels;
+        loaded = true;
+    }
 
-        if (image != null) {
-            this.width = width.get(0);
-            this.height = height.get(0);
-
-            // Upload texture to GPU
-            if (channels.get(0) == 3) {
-                glTexImage2D(GL_TEXTURE_2D, 0, GL_RGB, width.get(0), height.get(0), 0, GL_RGB, GL_UNSIGNED_BYTE, image);
-            } else if (channels.get(0) == 4) {
-                glTexImage2D(GL_TEXTURE_2D, 0, GL_RGBA, width.get(0), height.get(0), 0, GL_RGBA, GL_UNSIGNED_BYTE, image);
-            } else {
-                LOGGER.error("Image channels not supported: " + channels.get(0));
-            }
-            // Free the image memory (now is on the GPU)
-            stbi_image_free(image);
-        } else {
-            LOGGER.error("Failed to load texture: " + file.getPath());
+    static int format(int channels) {
+        if (channels == 3) return GL_RGB;
+        else if (channels == 4) return GL_RGBA;
+
+        LOGGER.error("Image channels not supported: " + channels);
+        return -1;
+    }
+
+    // Textures are shared through the AssetPool, a saved texture only identifies which one to use
+    public static class JsonAdapter implements JsonDeserializer<Texture> {
+
+        @Override
+        public Texture deserialize(JsonElement json, Type t, JsonDeserializationContext ctx) throws JsonParseException {
+            if (!json.isJsonObject()) throw new JsonParseException("Invalid or malformed Texture: not an object");
+            JsonObject obj = json.getAsJsonObject();
+
+            if (!obj.has("path")) throw new JsonParseException("Invalid or malformed Texture: missing path");
+
+            return AssetPool.getTexture(obj.get("path").getAsString());
         }
     }
 }
@@ -0,0 +1,159 @@
+package it.multicoredev.ui.renderer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.zip.CRC32C;
+
+import static it.multicoredev.App.LOGGER;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * BSD 3-Clause License
+ * <p>
+ * Copyright (c) 2022, Lorenzo Magni
+ * All rights reserved.
+ * <p>
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * <p>
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * <p>
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * <p>
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+public class TextureCache {
+    // Entry
+    // ======
+    // Magic    |   Version |   Source size |   Source hash |   Width   |   Height  |   Channels    |   Padding  |   Pixels
+    // int      |   int     |   long        |   long        |   int     |   int     |   int         |   to 64    |   byte[]
+    // ======
+    private static final int MAGIC = 0x54584331; // TXC1
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+
+    private static Path directory = Path.of("cache", "textures");
+    private static boolean enabled = true;
+
+    public static Path getDirectory() {
+        return directory;
+    }
+
+    public static void setDirectory(Path directory) {
+        TextureCache.directory = directory;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        TextureCache.enabled = enabled;
+    }
+
+    static long hash(ByteBuffer source) {
+        CRC32C crc = new CRC32C();
+        crc.update(source.duplicate());
+        return crc.getValue();
+    }
+
+    // Maps the cached pixels of the given source, or returns null if there is no entry or it is stale
+    static TextureLoader.DecodedImage get(Texture texture, String path, long sourceSize, long sourceHash) {
+        if (!enabled) return null;
+
+        Path file = entryFile(path);
+        if (!Files.isRegularFile(file)) return null;
+
+        try (FileChannel channel = FileChannel.open(file, READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE) return null;
+
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (mapped.getInt(0) != MAGIC || mapped.getInt(4) != VERSION) return null;
+            if (mapped.getLong(8) != sourceSize || mapped.getLong(16) != sourceHash) return null;
+
+            int width = mapped.getInt(24);
+            int height = mapped.getInt(28);
+            int channels = mapped.getInt(32);
+            long pixelsSize = (long) width * height * channels;
+            if (size != HEADER_SIZE + pixelsSize) return null;
+
+            // Fault the pages in here rather than on the GL thread during the upload
+            mapped.load();
+
+            return new TextureLoader.DecodedImage(texture, mapped.slice(HEADER_SIZE, (int) pixelsSize), width, height, channels, false);
+        } catch (IOException e) {
+            LOGGER.warn("Cannot read cached texture: " + path, e);
+            return null;
+        }
+    }
+
+    static void put(String path, long sourceSize, long sourceHash, int width, int height, int channels, ByteBuffer pixels) {
+        if (!enabled) return;
+
+        try {
+            Files.createDirectories(directory);
+
+            Path file = entryFile(path);
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+
+            try (FileChannel channel = FileChannel.open(tmp, CREATE, WRITE, TRUNCATE_EXISTING)) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+                        .putInt(MAGIC)
+                        .putInt(VERSION)
+                        .putLong(sourceSize)
+                        .putLong(sourceHash)
+                        .putInt(width)
+                        .putInt(height)
+                        .putInt(channels)
+                        .clear();
+
+                while (header.hasRemaining()) channel.write(header);
+
+                ByteBuffer data = pixels.duplicate();
+                while (data.hasRemaining()) channel.write(data);
+            }
+
+            // Readers only ever see a complete entry
+            Files.move(tmp, file, REPLACE_EXISTING, ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOGGER.warn("Cannot cache texture: " + path, e);
+        }
+    }
+
+    private static Path entryFile(String path) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(path.getBytes(StandardCharsets.UTF_8));
+            return directory.resolve(HexFormat.of().formatHex(digest) + ".rgba");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
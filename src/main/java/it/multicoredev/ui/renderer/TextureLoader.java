@@ -0,0 +1,218 @@
+package it.multicoredev.ui.renderer;
+
+import it.multicoredev.utils.AssetPool;
+import org.lwjgl.system.MemoryStack;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static it.multicoredev.App.LOGGER;
+import static org.lwjgl.opengl.GL21C.*;
+import static org.lwjgl.stb.STBImage.*;
+import static org.lwjgl.system.MemoryUtil.memAlloc;
+import static org.lwjgl.system.MemoryUtil.memFree;
+
+/**
+ * BSD 3-Clause License
+ * <p>
+ * Copyright (c) 2022, Lorenzo Magni
+ * All rights reserved.
+ * <p>
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * <p>
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * <p>
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * <p>
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+public class TextureLoader {
+    private static final AtomicInteger pending = new AtomicInteger();
+    private static final Object IDLE = new Object();
+    // Bytes uploaded per GL task
+    private static final int SLICE_BYTES = 256 * 1024;
+
+    static {
+        // Set once here, before any worker runs, as the flag is global to stb_image
+        stbi_set_flip_vertically_on_load(true);
+    }
+
+    // Gives the texture a placeholder image right away (or as the first GL task when called from another thread),
+    // decodes the real image on a worker and uploads it on the GL thread.
+    public static CompletableFuture<Texture> load(File file) {
+        return load(new Texture(), file);
+    }
+
+    // Same as load(File), reusing an existing (for example evicted) texture object
+    public static CompletableFuture<Texture> load(Texture texture, File file) {
+        GLExecutor.run(() -> texture.create(file));
+
+        pending.incrementAndGet();
+        return CompletableFuture.supplyAsync(() -> decode(texture, file), AssetPool.workers())
+                .thenApplyAsync(image -> {
+                    if (image == null) {
+                        texture.setFailed();
+                        throw new IllegalStateException("Failed to load texture: " + file.getPath());
+                    }
+
+                    return upload(image);
+                }, GLExecutor.get())
+                .thenCompose(upload -> upload)
+                .whenComplete((t, e) -> {
+                    if (pending.decrementAndGet() == 0) {
+                        synchronized (IDLE) {
+                            IDLE.notifyAll();
+                        }
+                    }
+                });
+    }
+
+    // Creates a texture from pixels that are already decoded, for example mapped from the asset pack
+    public static CompletableFuture<Texture> load(Texture texture, File file, int width, int height, int channels, ByteBuffer pixels) {
+        GLExecutor.run(() -> texture.create(file));
+
+        DecodedImage image = new DecodedImage(texture, pixels, width, height, channels, false);
+        return CompletableFuture.supplyAsync(() -> upload(image), GLExecutor.get()).thenCompose(upload -> upload);
+    }
+
+    // Blocks until every queued texture has been decoded and uploaded
+    public static void flush() {
+        if (GLExecutor.isGLThread()) {
+            GLExecutor.awaitUntil(TextureLoader::isIdle);
+            return;
+        }
+
+        // Other threads sleep until the last upload wakes them
+        synchronized (IDLE) {
+            try {
+                while (!isIdle()) IDLE.wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public static boolean isIdle() {
+        return pending.get() == 0;
+    }
+
+    static DecodedImage decode(Texture texture, File file) {
+        ByteBuffer encoded = null;
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            encoded = memAlloc((int) channel.size());
+            while (encoded.hasRemaining()) {
+                if (channel.read(encoded) == -1) break;
+            }
+            encoded.flip();
+
+            long sourceSize = encoded.remaining();
+            long sourceHash = TextureCache.hash(encoded);
+
+            DecodedImage cached = TextureCache.get(texture, file.getPath(), sourceSize, sourceHash);
+            if (cached != null) return cached;
+
+            try (MemoryStack stack = MemoryStack.stackPush()) {
+                IntBuffer width = stack.mallocInt(1);
+                IntBuffer height = stack.mallocInt(1);
+                IntBuffer channels = stack.mallocInt(1);
+
+                ByteBuffer pixels = stbi_load_from_memory(encoded, width, height, channels, 0);
+                if (pixels == null) {
+                    LOGGER.error("Failed to load texture: " + file.getPath() + " (" + stbi_failure_reason() + ")");
+                    return null;
+                }
+
+                TextureCache.put(file.getPath(), sourceSize, sourceHash, width.get(0), height.get(0), channels.get(0), pixels);
+
+                return new DecodedImage(texture, pixels, width.get(0), height.get(0), channels.get(0), true);
+            }
+        } catch (IOException e) {
+            LOGGER.error("Failed to read texture: " + file.getPath(), e);
+            return null;
+        } finally {
+            if (encoded != null) memFree(encoded);
+        }
+    }
+
+    // Uploads the image a few rows per GL task. The executor runs tasks within its per-frame budget, so a large
+    // image is spread over frames instead of stalling one. The rows go to a new texture name that replaces the
+    // placeholder once the last one is in, a half uploaded image is never drawn.
+    private static CompletableFuture<Texture> upload(DecodedImage image) {
+        CompletableFuture<Texture> done = new CompletableFuture<>();
+
+        int format = Texture.format(image.channels());
+        if (format == -1) {
+            image.free();
+            done.completeExceptionally(new IllegalStateException("Unsupported texture: " + image.texture().getPath()));
+            return done;
+        }
+
+        int target = Texture.allocate(image.width(), image.height(), format);
+        int rowBytes = image.width() * image.channels();
+        int rows = Math.max(1, SLICE_BYTES / rowBytes);
+
+        GLExecutor.get().execute(new Runnable() {
+            private int row = 0;
+
+            @Override
+            public void run() {
+                try {
+                    int count = Math.min(rows, image.height() - row);
+                    glBindTexture(GL_TEXTURE_2D, target);
+                    // Rows are tightly packed, an RGB image is not aligned to 4 bytes
+                    glPixelStorei(GL_UNPACK_ALIGNMENT, 1);
+                    glTexSubImage2D(GL_TEXTURE_2D, 0, 0, row, image.width(), count, format, GL_UNSIGNED_BYTE,
+                            image.pixels().slice(row * rowBytes, count * rowBytes));
+                    glPixelStorei(GL_UNPACK_ALIGNMENT, 4);
+                    row += count;
+
+                    if (row < image.height()) {
+                        GLExecutor.get().execute(this);
+                        return;
+                    }
+
+                    image.texture().replace(target, image.width(), image.height(), image.channels());
+                    image.free();
+                    done.complete(image.texture());
+                } catch (RuntimeException e) {
+                    glDeleteTextures(target);
+                    image.free();
+                    done.completeExceptionally(e);
+                }
+            }
+        });
+
+        return done;
+    }
+
+    record DecodedImage(Texture texture, ByteBuffer pixels, int width, int height, int channels, boolean stbAllocated) {
+
+        void free() {
+            if (pixels != null && stbAllocated) stbi_image_free(pixels);
+        }
+    }
+}
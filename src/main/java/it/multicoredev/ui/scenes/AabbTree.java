@@ -0,0 +1,549 @@
+package it.multicoredev.ui.scenes;
+
+import java.util.Arrays;
+
+/**
+ * BSD 3-Clause License
+ * <p>
+ * Copyright (c) 2022, Lorenzo Magni
+ * All rights reserved.
+ * <p>
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * <p>
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * <p>
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * <p>
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+// Dynamic bounding volume tree over axis aligned boxes. Leaves store a fattened box, so an item that moves a little
+// stays in its leaf and only leaving it costs a removal and a reinsertion. Inserting refits and rebalances the
+// ancestors of the new leaf with rotations, keeping the tree height logarithmic.
+// Queries walk the tree with a reused stack and report the items to a visitor, they are not reentrant.
+public class AabbTree<T> {
+    private static final int NULL = -1;
+
+    private final float margin;
+
+    private float[] minX = new float[64];
+    private float[] minY = new float[64];
+    private float[] maxX = new float[64];
+    private float[] maxY = new float[64];
+    private int[] parent = new int[64];
+    private int[] child1 = new int[64];
+    private int[] child2 = new int[64];
+    // Leaves have height 0, free nodes -1
+    private int[] height = new int[64];
+    private Object[] items = new Object[64];
+
+    private int root = NULL;
+    private int freeList = NULL;
+    private int nodeCount = 0;
+    private int leafCount = 0;
+
+    private int[] stack = new int[64];
+    private float[] inherited = new float[64];
+    private int[] leaves = new int[0];
+
+    public AabbTree(float margin) {
+        this.margin = margin;
+        for (int i = 0; i < height.length; i++) height[i] = -1;
+    }
+
+    // Returns the proxy that identifies the item in the tree
+    public int insert(T item, float x0, float y0, float x1, float y1) {
+        int leaf = allocate();
+        setBox(leaf, x0 - margin, y0 - margin, x1 + margin, y1 + margin);
+        items[leaf] = item;
+        height[leaf] = 0;
+
+        insertLeaf(leaf);
+        leafCount++;
+        return leaf;
+    }
+
+    // Adds the item without linking it in the tree: queries miss it until the next rebuild. Meant for bulk loads
+    public int add(T item, float x0, float y0, float x1, float y1) {
+        int leaf = allocate();
+        setBox(leaf, x0 - margin, y0 - margin, x1 + margin, y1 + margin);
+        items[leaf] = item;
+        height[leaf] = 0;
+
+        leafCount++;
+        return leaf;
+    }
+
+    // Builds the tree again top down from all its leaves, splitting them at the median of the longest axis.
+    // Much faster than inserting them one by one and gives tighter boxes, proxies stay valid
+    public void rebuild() {
+        if (leaves.length < leafCount) leaves = new int[leafCount];
+
+        int count = 0;
+        for (int node = 0; node < nodeCount; node++) {
+            if (height[node] == 0) leaves[count++] = node;
+            else if (height[node] > 0) free(node);
+        }
+
+        root = count == 0 ? NULL : build(0, count);
+        if (root != NULL) parent[root] = NULL;
+    }
+
+    private int build(int from, int to) {
+        if (to - from == 1) return leaves[from];
+
+        float x0 = Float.MAX_VALUE, y0 = Float.MAX_VALUE, x1 = -Float.MAX_VALUE, y1 = -Float.MAX_VALUE;
+        for (int i = from; i < to; i++) {
+            int leaf = leaves[i];
+            float cx = minX[leaf] + maxX[leaf];
+            float cy = minY[leaf] + maxY[leaf];
+            x0 = Math.min(x0, cx);
+            y0 = Math.min(y0, cy);
+            x1 = Math.max(x1, cx);
+            y1 = Math.max(y1, cy);
+        }
+
+        int mid = (from + to) >>> 1;
+        select(from, to - 1, mid, x1 - x0 >= y1 - y0);
+
+        int left = build(from, mid);
+        int right = build(mid, to);
+
+        int node = allocate();
+        child1[node] = left;
+        child2[node] = right;
+        parent[left] = node;
+        parent[right] = node;
+        height[node] = 1 + Math.max(height[left], height[right]);
+        setBox(node, Math.min(minX[left], minX[right]), Math.min(minY[left], minY[right]),
+                Math.max(maxX[left], maxX[right]), Math.max(maxY[left], maxY[right]));
+        return node;
+    }
+
+    // Partially sorts the leaves between lo and hi by center so that the k-th one is in place
+    private void select(int lo, int hi, int k, boolean alongX) {
+        while (lo < hi) {
+            float pivot = center(leaves[(lo + hi) >>> 1], alongX);
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (center(leaves[i], alongX) < pivot) i++;
+                while (center(leaves[j], alongX) > pivot) j--;
+                if (i <= j) {
+                    int tmp = leaves[i];
+                    leaves[i++] = leaves[j];
+                    leaves[j--] = tmp;
+                }
+            }
+
+            if (k <= j) hi = j;
+            else if (k >= i) lo = i;
+            else return;
+        }
+    }
+
+    private float center(int node, boolean alongX) {
+        return alongX ? minX[node] + maxX[node] : minY[node] + maxY[node];
+    }
+
+    public void remove(int proxy) {
+        removeLeaf(proxy);
+        free(proxy);
+        leafCount--;
+    }
+
+    // Returns false if the new box still fits in the fattened one and nothing changed
+    public boolean move(int proxy, float x0, float y0, float x1, float y1) {
+        if (minX[proxy] <= x0 && minY[proxy] <= y0 && maxX[proxy] >= x1 && maxY[proxy] >= y1) return false;
+
+        removeLeaf(proxy);
+        setBox(proxy, x0 - margin, y0 - margin, x1 + margin, y1 + margin);
+        insertLeaf(proxy);
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    public T get(int proxy) {
+        return (T) items[proxy];
+    }
+
+    public int size() {
+        return leafCount;
+    }
+
+    public void clear() {
+        Arrays.fill(items, null);
+        for (int i = 0; i < height.length; i++) height[i] = -1;
+
+        root = NULL;
+        freeList = NULL;
+        nodeCount = 0;
+        leafCount = 0;
+    }
+
+    public void queryPoint(float x, float y, Visitor<T> visitor) {
+        queryRect(x, y, x, y, visitor);
+    }
+
+    @SuppressWarnings("unchecked")
+    public void queryRect(float x0, float y0, float x1, float y1, Visitor<T> visitor) {
+        if (root == NULL) return;
+
+        int top = 0;
+        stack[top++] = root;
+        while (top > 0) {
+            int node = stack[--top];
+            if (minX[node] > x1 || maxX[node] < x0 || minY[node] > y1 || maxY[node] < y0) continue;
+
+            if (height[node] == 0) {
+                if (!visitor.visit((T) items[node])) return;
+            } else {
+                if (top + 2 > stack.length) stack = Arrays.copyOf(stack, stack.length * 2);
+                stack[top++] = child1[node];
+                stack[top++] = child2[node];
+            }
+        }
+    }
+
+    // Visits the items whose fattened box the segment from (x0, y0) to (x1, y1) crosses. The visitor returns
+    // the fraction of the segment to keep searching (the hit distance to find the closest), 0 to stop or -1 to ignore the item
+    @SuppressWarnings("unchecked")
+    public void raycast(float x0, float y0, float x1, float y1, RayVisitor<T> visitor) {
+        if (root == NULL) return;
+
+        float dx = x1 - x0;
+        float dy = y1 - y0;
+        float maxFraction = 1;
+
+        int top = 0;
+        stack[top++] = root;
+        while (top > 0) {
+            int node = stack[--top];
+            if (!crosses(node, x0, y0, dx, dy, maxFraction)) continue;
+
+            if (height[node] == 0) {
+                float fraction = visitor.visit((T) items[node], maxFraction);
+                if (fraction == 0) return;
+                if (fraction > 0) maxFraction = Math.min(maxFraction, fraction);
+            } else {
+                if (top + 2 > stack.length) stack = Arrays.copyOf(stack, stack.length * 2);
+                stack[top++] = child1[node];
+                stack[top++] = child2[node];
+            }
+        }
+    }
+
+    // Slab test of the segment origin + t * direction, t in [0, maxFraction], against the box of the node
+    private boolean crosses(int node, float x0, float y0, float dx, float dy, float maxFraction) {
+        float tMin = 0;
+        float tMax = maxFraction;
+
+        if (dx == 0) {
+            if (x0 < minX[node] || x0 > maxX[node]) return false;
+        } else {
+            float t0 = (minX[node] - x0) / dx;
+            float t1 = (maxX[node] - x0) / dx;
+            tMin = Math.max(tMin, Math.min(t0, t1));
+            tMax = Math.min(tMax, Math.max(t0, t1));
+        }
+
+        if (dy == 0) {
+            if (y0 < minY[node] || y0 > maxY[node]) return false;
+        } else {
+            float t0 = (minY[node] - y0) / dy;
+            float t1 = (maxY[node] - y0) / dy;
+            tMin = Math.max(tMin, Math.min(t0, t1));
+            tMax = Math.min(tMax, Math.max(t0, t1));
+        }
+
+        return tMin <= tMax;
+    }
+
+    private void insertLeaf(int leaf) {
+        if (root == NULL) {
+            root = leaf;
+            parent[leaf] = NULL;
+            return;
+        }
+
+        int node = findSibling(leaf);
+
+        int sibling = node;
+        int oldParent = parent[sibling];
+        int newParent = allocate();
+        parent[newParent] = oldParent;
+        items[newParent] = null;
+        setBox(newParent, Math.min(minX[leaf], minX[sibling]), Math.min(minY[leaf], minY[sibling]),
+                Math.max(maxX[leaf], maxX[sibling]), Math.max(maxY[leaf], maxY[sibling]));
+        height[newParent] = height[sibling] + 1;
+
+        if (oldParent != NULL) {
+            if (child1[oldParent] == sibling) child1[oldParent] = newParent;
+            else child2[oldParent] = newParent;
+        } else {
+            root = newParent;
+        }
+        child1[newParent] = sibling;
+        child2[newParent] = leaf;
+        parent[sibling] = newParent;
+        parent[leaf] = newParent;
+
+        refit(parent[leaf]);
+    }
+
+    // Branch and bound search of the sibling that grows the total perimeter of the tree the least: a node costs
+    // the perimeter of its new parent plus what its ancestors grow, a subtree is skipped when even a zero size
+    // sibling inside it could not beat the best found
+    private int findSibling(int leaf) {
+        float leafPerimeter = perimeter(leaf);
+        int best = root;
+        float bestCost = combinedPerimeter(root, leaf);
+
+        int top = 0;
+        stack[top] = root;
+        inherited[top++] = 0;
+        while (top > 0) {
+            int node = stack[--top];
+            float inheritedCost = inherited[top];
+
+            float direct = combinedPerimeter(node, leaf);
+            float cost = direct + inheritedCost;
+            if (cost < bestCost) {
+                best = node;
+                bestCost = cost;
+            }
+
+            if (height[node] == 0) continue;
+
+            inheritedCost += direct - perimeter(node);
+            if (leafPerimeter + inheritedCost >= bestCost) continue;
+
+            if (top + 2 > stack.length) {
+                stack = Arrays.copyOf(stack, stack.length * 2);
+                inherited = Arrays.copyOf(inherited, stack.length);
+            }
+            stack[top] = child1[node];
+            inherited[top++] = inheritedCost;
+            stack[top] = child2[node];
+            inherited[top++] = inheritedCost;
+        }
+
+        return best;
+    }
+
+    private void removeLeaf(int leaf) {
+        if (leaf == root) {
+            root = NULL;
+            return;
+        }
+
+        int p = parent[leaf];
+        int grandParent = parent[p];
+        int sibling = child1[p] == leaf ? child2[p] : child1[p];
+
+        if (grandParent != NULL) {
+            if (child1[grandParent] == p) child1[grandParent] = sibling;
+            else child2[grandParent] = sibling;
+            parent[sibling] = grandParent;
+            free(p);
+
+            refit(grandParent);
+        } else {
+            root = sibling;
+            parent[sibling] = NULL;
+            free(p);
+        }
+    }
+
+    // Rebalances and recomputes the boxes and heights from the node up to the root
+    private void refit(int node) {
+        while (node != NULL) {
+            node = balance(node);
+
+            int c1 = child1[node];
+            int c2 = child2[node];
+            height[node] = 1 + Math.max(height[c1], height[c2]);
+            setBox(node, Math.min(minX[c1], minX[c2]), Math.min(minY[c1], minY[c2]), Math.max(maxX[c1], maxX[c2]), Math.max(maxY[c1], maxY[c2]));
+
+            node = parent[node];
+        }
+    }
+
+    // Rotates the taller grandchild up when the children heights differ by more than one, returns the node now in place of a
+    private int balance(int a) {
+        if (height[a] < 2) return a;
+
+        int b = child1[a];
+        int c = child2[a];
+        int balance = height[c] - height[b];
+
+        if (balance > 1) return rotate(a, c, b, true);
+        if (balance < -1) return rotate(a, b, c, false);
+
+        return a;
+    }
+
+    // Moves the child up in place of a, a takes the shorter grandchild of the child
+    private int rotate(int a, int child, int other, boolean childIsSecond) {
+        int f = child1[child];
+        int g = child2[child];
+
+        child1[child] = a;
+        parent[child] = parent[a];
+        parent[a] = child;
+
+        int oldParent = parent[child];
+        if (oldParent != NULL) {
+            if (child1[oldParent] == a) child1[oldParent] = child;
+            else child2[oldParent] = child;
+        } else {
+            root = child;
+        }
+
+        int taller = height[f] > height[g] ? f : g;
+        int shorter = taller == f ? g : f;
+
+        child2[child] = taller;
+        if (childIsSecond) child2[a] = shorter;
+        else child1[a] = shorter;
+        parent[shorter] = a;
+
+        setBox(a, Math.min(minX[other], minX[shorter]), Math.min(minY[other], minY[shorter]),
+                Math.max(maxX[other], maxX[shorter]), Math.max(maxY[other], maxY[shorter]));
+        height[a] = 1 + Math.max(height[other], height[shorter]);
+
+        setBox(child, Math.min(minX[a], minX[taller]), Math.min(minY[a], minY[taller]),
+                Math.max(maxX[a], maxX[taller]), Math.max(maxY[a], maxY[taller]));
+        height[child] = 1 + Math.max(height[a], height[taller]);
+
+        return child;
+    }
+
+    // Throws on the first broken link, height or box and checks that every node is either in the tree or free.
+    // Leaves added since the last rebuild are not linked yet, call it after the rebuild
+    void validate() {
+        if (root != NULL && parent[root] != NULL) throw new IllegalStateException("Root " + root + " has a parent");
+
+        int reached = 0;
+        int leaves = 0;
+        int top = 0;
+        if (root != NULL) stack[top++] = root;
+        while (top > 0) {
+            int node = stack[--top];
+            reached++;
+
+            if (height[node] == 0) {
+                if (child1[node] != NULL || child2[node] != NULL) throw new IllegalStateException("Leaf " + node + " has children");
+                if (items[node] == null) throw new IllegalStateException("Leaf " + node + " has no item");
+                leaves++;
+                continue;
+            }
+
+            int c1 = child1[node];
+            int c2 = child2[node];
+            if (c1 == NULL || c2 == NULL) throw new IllegalStateException("Node " + node + " misses a child");
+            if (parent[c1] != node || parent[c2] != node) throw new IllegalStateException("Children of " + node + " point to another parent");
+            if (height[node] != 1 + Math.max(height[c1], height[c2])) throw new IllegalStateException("Node " + node + " has a wrong height");
+            if (!contains(node, c1) || !contains(node, c2)) throw new IllegalStateException("Node " + node + " does not contain its children");
+
+            if (top + 2 > stack.length) stack = Arrays.copyOf(stack, stack.length * 2);
+            stack[top++] = c1;
+            stack[top++] = c2;
+        }
+
+        if (leaves != leafCount) throw new IllegalStateException("Tree holds " + leaves + " leaves, " + leafCount + " expected");
+
+        int free = 0;
+        for (int node = freeList; node != NULL; node = parent[node]) {
+            if (height[node] != -1) throw new IllegalStateException("Free node " + node + " is in use");
+            if (++free > nodeCount) throw new IllegalStateException("Free list loops");
+        }
+        if (reached + free != nodeCount) throw new IllegalStateException((nodeCount - reached - free) + " nodes are lost");
+    }
+
+    private boolean contains(int node, int child) {
+        return minX[node] <= minX[child] && minY[node] <= minY[child] && maxX[node] >= maxX[child] && maxY[node] >= maxY[child];
+    }
+
+    private float perimeter(int node) {
+        return 2 * (maxX[node] - minX[node] + maxY[node] - minY[node]);
+    }
+
+    private float combinedPerimeter(int a, int b) {
+        float width = Math.max(maxX[a], maxX[b]) - Math.min(minX[a], minX[b]);
+        float height = Math.max(maxY[a], maxY[b]) - Math.min(minY[a], minY[b]);
+        return 2 * (width + height);
+    }
+
+    private void setBox(int node, float x0, float y0, float x1, float y1) {
+        minX[node] = x0;
+        minY[node] = y0;
+        maxX[node] = x1;
+        maxY[node] = y1;
+    }
+
+    private int allocate() {
+        if (freeList == NULL) {
+            if (nodeCount == height.length) grow(nodeCount * 2);
+            freeList = nodeCount++;
+            parent[freeList] = NULL;
+        }
+
+        int node = freeList;
+        freeList = parent[node];
+        parent[node] = NULL;
+        child1[node] = NULL;
+        child2[node] = NULL;
+        height[node] = 0;
+        return node;
+    }
+
+    // Free nodes are chained through their parent index
+    private void free(int node) {
+        parent[node] = freeList;
+        height[node] = -1;
+        items[node] = null;
+        freeList = node;
+    }
+
+    private void grow(int size) {
+        int old = height.length;
+        minX = Arrays.copyOf(minX, size);
+        minY = Arrays.copyOf(minY, size);
+        maxX = Arrays.copyOf(maxX, size);
+        maxY = Arrays.copyOf(maxY, size);
+        parent = Arrays.copyOf(parent, size);
+        child1 = Arrays.copyOf(child1, size);
+        child2 = Arrays.copyOf(child2, size);
+        height = Arrays.copyOf(height, size);
+        items = Arrays.copyOf(items, size);
+        for (int i = old; i < size; i++) height[i] = -1;
+    }
+
+    @FunctionalInterface
+    public interface Visitor<T> {
+        // Returns false to stop the query
+        boolean visit(T item);
+    }
+
+    @FunctionalInterface
+    public interface RayVisitor<T> {
+        float visit(T item, float maxFraction);
+    }
+}
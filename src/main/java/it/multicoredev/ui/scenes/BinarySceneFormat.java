@@ -0,0 +1,584 @@
+package it.multicoredev.ui.scenes;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import it.multicoredev.ui.GameObject;
+import it.multicoredev.ui.Prefab;
+import it.multicoredev.ui.Prefabs;
+import it.multicoredev.ui.Transform;
+import it.multicoredev.ui.components.Component;
+import it.multicoredev.ui.components.Sprite;
+import it.multicoredev.ui.components.codec.ComponentCodec;
+import it.multicoredev.ui.components.codec.ComponentCodecs;
+import it.multicoredev.ui.components.codec.ComponentReader;
+import it.multicoredev.ui.components.codec.ComponentWriter;
+import it.multicoredev.ui.renderer.Texture;
+import it.multicoredev.utils.AssetPool;
+import org.joml.Vector2f;
+import org.joml.Vector3f;
+import org.joml.Vector4f;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * BSD 3-Clause License
+ * <p>
+ * Copyright (c) 2022, Lorenzo Magni
+ * All rights reserved.
+ * <p>
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * <p>
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * <p>
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * <p>
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+public class BinarySceneFormat implements SceneFormat {
+    public static final BinarySceneFormat INSTANCE = new BinarySceneFormat();
+
+    private static final int MAGIC = 0x5453434E; // TSCN
+    private static final int VERSION = 3;
+    private static final int HEADER_SIZE = 128;
+
+    // Components without a @ComponentType are stored as compact json inside their record
+    private static final Gson FALLBACK = new GsonBuilder().disableHtmlEscaping().create();
+
+    private BinarySceneFormat() {
+    }
+
+    /*
+     * Header (128 bytes):
+     *   int magic, int version, int objects, int assets, int types, int prefabs
+     *   float minX, minY, maxX, maxY (bounds of every transform)
+     *   long offsets of the assets, types, prefabs, names, transforms, z indices, prefab indices and components sections
+     *
+     * Sections:
+     *   assets:     string[assets] texture paths referenced by the components
+     *   types:      string[types] class names of the components without a @ComponentType
+     *   prefabs:    string[prefabs] ids of the prefabs the objects are instances of
+     *   names:      string[objects], empty for prefab instances
+     *   transforms: float[objects] x, float[objects] y, float[objects] scale x, float[objects] scale y
+     *   z indices:  int[objects]
+     *   prefab indices: int[objects], index in the prefabs section or -1
+     *   components: per object a short count followed by (short type, int length, payload) records.
+     *               A type >= 0 is the id of the generated codec that wrote the payload,
+     *               a negative type is -1 - the index of the class in the types section and the payload is json.
+     *               Prefab instances first have a short count of (short component, int length, payload) records
+     *               holding only the fields that differ from the prefab, then the records of their extra components.
+     *
+     * Strings are a short length followed by utf-8 bytes, everything is big endian.
+     */
+
+    @Override
+    public Snapshot snapshot(List<GameObject> objects) {
+        byte[] data;
+
+        try {
+            data = encode(objects);
+        } catch (IOException e) {
+            // Only in memory streams are involved
+            throw new IllegalStateException(e);
+        }
+
+        return path -> Files.write(path, data);
+    }
+
+    @Override
+    public List<GameObject> read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) throw new IOException("Binary scene too large: " + size + " bytes");
+
+            return decode(readFully(channel, (int) size));
+        }
+    }
+
+    // Reads only the header, enough to size or place a level without decoding it
+    public Bounds readBounds(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = readFully(channel, (int) Math.min(channel.size(), HEADER_SIZE));
+            checkHeader(header);
+
+            return new Bounds(header.getInt(8), header.getFloat(24), header.getFloat(28), header.getFloat(32), header.getFloat(36));
+        }
+    }
+
+    // Heap reads instead of a mapping, so the file can be overwritten as soon as the channel closes
+    private static ByteBuffer readFully(FileChannel channel, int size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) throw new IOException("Unexpected end of binary scene");
+        }
+
+        return buffer.flip();
+    }
+
+    private byte[] encode(List<GameObject> objects) throws IOException {
+        int count = objects.size();
+        Map<String, Integer> assets = new LinkedHashMap<>();
+        Map<Class<?>, Integer> types = new LinkedHashMap<>();
+        Map<String, Integer> prefabs = new LinkedHashMap<>();
+        BinaryComponentWriter componentWriter = new BinaryComponentWriter(assets);
+
+        float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY;
+        float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY;
+
+        ByteArrayOutputStream names = new ByteArrayOutputStream(count * 16);
+        ByteArrayOutputStream transforms = new ByteArrayOutputStream(count * 16);
+        ByteArrayOutputStream zIndices = new ByteArrayOutputStream(count * 4);
+        ByteArrayOutputStream prefabIndices = new ByteArrayOutputStream(count * 4);
+        ByteArrayOutputStream components = new ByteArrayOutputStream(count * 64);
+        ByteArrayOutputStream record = new ByteArrayOutputStream(64);
+
+        DataOutputStream namesOut = new DataOutputStream(names);
+        DataOutputStream transformsOut = new DataOutputStream(transforms);
+        DataOutputStream zIndicesOut = new DataOutputStream(zIndices);
+        DataOutputStream prefabIndicesOut = new DataOutputStream(prefabIndices);
+        DataOutputStream componentsOut = new DataOutputStream(components);
+        DataOutputStream recordOut = new DataOutputStream(record);
+        componentWriter.out = recordOut;
+
+        for (GameObject obj : objects) {
+            Prefab prefab = obj.getPrefab();
+
+            writeString(namesOut, prefab == null ? obj.getName() : "");
+            zIndicesOut.writeInt(obj.zIndex());
+            prefabIndicesOut.writeInt(prefab == null ? -1 : prefabs.computeIfAbsent(prefab.getId(), id -> prefabs.size()));
+
+            Transform transform = obj.transform;
+            minX = Math.min(minX, Math.min(transform.position.x, transform.position.x + transform.scale.x));
+            minY = Math.min(minY, Math.min(transform.position.y, transform.position.y + transform.scale.y));
+            maxX = Math.max(maxX, Math.max(transform.position.x, transform.position.x + transform.scale.x));
+            maxY = Math.max(maxY, Math.max(transform.position.y, transform.position.y + transform.scale.y));
+
+            List<Component> list = obj.getComponents();
+            int first = 0;
+
+            if (prefab != null) {
+                first = prefab.size();
+
+                int overridden = 0;
+                for (int i = 0; i < first; i++) {
+                    if (ComponentCodecs.overrides(prefab.getCodec(i), list.get(i), prefab.getTemplate(i)) != 0) overridden++;
+                }
+
+                componentsOut.writeShort(overridden);
+                for (int i = 0; i < first && overridden > 0; i++) {
+                    ComponentCodec<?> codec = prefab.getCodec(i);
+                    if (ComponentCodecs.overrides(codec, list.get(i), prefab.getTemplate(i)) == 0) continue;
+
+                    record.reset();
+                    ComponentCodecs.writeOverrides(codec, list.get(i), prefab.getTemplate(i), componentWriter);
+
+                    componentsOut.writeShort(i);
+                    componentsOut.writeInt(record.size());
+                    record.writeTo(componentsOut);
+                }
+            }
+
+            componentsOut.writeShort(list.size() - first);
+            for (int i = first; i < list.size(); i++) {
+                Component component = list.get(i);
+                ComponentCodec<?> codec = ComponentCodecs.get(component.getClass());
+                record.reset();
+
+                if (codec != null) {
+                    ComponentCodecs.write(codec, component, componentWriter);
+                    componentsOut.writeShort(codec.id());
+                } else {
+                    recordOut.write(FALLBACK.toJson(component, component.getClass()).getBytes(StandardCharsets.UTF_8));
+                    componentsOut.writeShort(-1 - types.computeIfAbsent(component.getClass(), c -> types.size()));
+                }
+
+                componentsOut.writeInt(record.size());
+                record.writeTo(componentsOut);
+            }
+        }
+
+        // Each column is written in one pass so that the loader can read it sequentially
+        for (GameObject obj : objects) transformsOut.writeFloat(obj.transform.position.x);
+        for (GameObject obj : objects) transformsOut.writeFloat(obj.transform.position.y);
+        for (GameObject obj : objects) transformsOut.writeFloat(obj.transform.scale.x);
+        for (GameObject obj : objects) transformsOut.writeFloat(obj.transform.scale.y);
+
+        ByteArrayOutputStream table = new ByteArrayOutputStream();
+        DataOutputStream tableOut = new DataOutputStream(table);
+        for (String asset : assets.keySet()) writeString(tableOut, asset);
+        int assetsSize = table.size();
+        for (Class<?> type : types.keySet()) writeString(tableOut, type.getName());
+        int typesSize = table.size() - assetsSize;
+        for (String prefab : prefabs.keySet()) writeString(tableOut, prefab);
+
+        if (count == 0) {
+            minX = minY = maxX = maxY = 0;
+        }
+
+        long assetsOffset = HEADER_SIZE;
+        long typesOffset = assetsOffset + assetsSize;
+        long prefabsOffset = typesOffset + typesSize;
+        long namesOffset = assetsOffset + table.size();
+        long transformsOffset = namesOffset + names.size();
+        long zIndicesOffset = transformsOffset + transforms.size();
+        long prefabIndicesOffset = zIndicesOffset + zIndices.size();
+        long componentsOffset = prefabIndicesOffset + prefabIndices.size();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream((int) (componentsOffset + components.size()));
+        DataOutputStream header = new DataOutputStream(out);
+        header.writeInt(MAGIC);
+        header.writeInt(VERSION);
+        header.writeInt(count);
+        header.writeInt(assets.size());
+        header.writeInt(types.size());
+        header.writeInt(prefabs.size());
+        header.writeFloat(minX);
+        header.writeFloat(minY);
+        header.writeFloat(maxX);
+        header.writeFloat(maxY);
+        header.writeLong(assetsOffset);
+        header.writeLong(typesOffset);
+        header.writeLong(prefabsOffset);
+        header.writeLong(namesOffset);
+        header.writeLong(transformsOffset);
+        header.writeLong(zIndicesOffset);
+        header.writeLong(prefabIndicesOffset);
+        header.writeLong(componentsOffset);
+        header.write(new byte[HEADER_SIZE - header.size()]);
+
+        table.writeTo(out);
+        names.writeTo(out);
+        transforms.writeTo(out);
+        zIndices.writeTo(out);
+        prefabIndices.writeTo(out);
+        components.writeTo(out);
+
+        return out.toByteArray();
+    }
+
+    private List<GameObject> decode(ByteBuffer buffer) throws IOException {
+        checkHeader(buffer);
+
+        int count = buffer.getInt(8);
+        int assetCount = buffer.getInt(12);
+        int typeCount = buffer.getInt(16);
+        int prefabCount = buffer.getInt(20);
+
+        buffer.position(offset(buffer, 40));
+        String[] assets = new String[assetCount];
+        for (int i = 0; i < assetCount; i++) assets[i] = readString(buffer);
+
+        buffer.position(offset(buffer, 48));
+        Class<?>[] types = new Class<?>[typeCount];
+        for (int i = 0; i < typeCount; i++) {
+            String type = readString(buffer);
+
+            try {
+                types[i] = Class.forName(type);
+            } catch (ClassNotFoundException e) {
+                throw new IOException("Unknown component type '" + type + "'", e);
+            }
+        }
+
+        buffer.position(offset(buffer, 56));
+        Prefab[] prefabs = new Prefab[prefabCount];
+        for (int i = 0; i < prefabCount; i++) {
+            String id = readString(buffer);
+            prefabs[i] = Prefabs.get(id);
+            if (prefabs[i] == null) throw new IOException("Unknown prefab '" + id + "'");
+        }
+
+        buffer.position(offset(buffer, 64));
+        String[] names = new String[count];
+        for (int i = 0; i < count; i++) names[i] = readString(buffer);
+
+        int transforms = offset(buffer, 72);
+        int zIndices = offset(buffer, 80);
+        int prefabIndices = offset(buffer, 88);
+        buffer.position(offset(buffer, 96));
+
+        // Textures are resolved once per asset, not once per sprite
+        BinaryComponentReader componentReader = new BinaryComponentReader(buffer, assets, new Texture[assetCount]);
+        List<GameObject> objects = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++) {
+            Vector2f position = new Vector2f(buffer.getFloat(transforms + i * 4), buffer.getFloat(transforms + (count + i) * 4));
+            Vector2f scale = new Vector2f(buffer.getFloat(transforms + (2 * count + i) * 4), buffer.getFloat(transforms + (3 * count + i) * 4));
+            int zIndex = buffer.getInt(zIndices + i * 4);
+            int prefabIndex = buffer.getInt(prefabIndices + i * 4);
+
+            GameObject obj;
+            if (prefabIndex < 0) {
+                obj = new GameObject(names[i], new Transform(position, scale), zIndex);
+            } else {
+                Prefab prefab = prefabs[prefabIndex];
+                obj = prefab.instantiate(new Transform(position, scale), zIndex);
+
+                int overridden = buffer.getShort() & 0xFFFF;
+                for (int c = 0; c < overridden; c++) {
+                    int index = buffer.getShort() & 0xFFFF;
+                    int length = buffer.getInt();
+                    int end = buffer.position() + length;
+
+                    ComponentCodecs.readOverrides(prefab.getCodec(index), obj.getComponents().get(index), componentReader);
+                    buffer.position(end);
+                }
+            }
+
+            int components = buffer.getShort() & 0xFFFF;
+            for (int c = 0; c < components; c++) {
+                short type = buffer.getShort();
+                int length = buffer.getInt();
+                int end = buffer.position() + length;
+
+                if (type >= 0) {
+                    ComponentCodec<?> codec = ComponentCodecs.get(type);
+                    if (codec == null) throw new IOException("Unknown component type " + type);
+
+                    obj.addComponent(codec.read(componentReader));
+                } else {
+                    byte[] json = new byte[length];
+                    buffer.get(json);
+                    obj.addComponent((Component) FALLBACK.fromJson(new String(json, StandardCharsets.UTF_8), types[-1 - type]));
+                }
+
+                buffer.position(end);
+            }
+
+            objects.add(obj);
+        }
+
+        return objects;
+    }
+
+    private static int offset(ByteBuffer buffer, int at) throws IOException {
+        long offset = buffer.getLong(at);
+        if (offset < HEADER_SIZE || offset > buffer.limit()) throw new IOException("Section offset out of range: " + offset);
+
+        return (int) offset;
+    }
+
+    private void checkHeader(ByteBuffer buffer) throws IOException {
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) throw new IOException("Not a binary scene");
+        if (buffer.getInt(4) != VERSION) throw new IOException("Unsupported binary scene version " + buffer.getInt(4));
+    }
+
+    private static void writeString(DataOutputStream out, String str) throws IOException {
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static class BinaryComponentWriter implements ComponentWriter {
+        private final Map<String, Integer> assets;
+        private DataOutputStream out;
+
+        private BinaryComponentWriter(Map<String, Integer> assets) {
+            this.assets = assets;
+        }
+
+        @Override
+        public void writeInt(String name, int value) {
+            try {
+                out.writeInt(value);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void writeFloat(String name, float value) {
+            try {
+                out.writeFloat(value);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void writeBoolean(String name, boolean value) {
+            try {
+                out.writeBoolean(value);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void writeString(String name, String value) {
+            if (!present(value)) return;
+
+            try {
+                BinarySceneFormat.writeString(out, value);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void writeVector2f(String name, Vector2f value) {
+            if (!present(value)) return;
+
+            writeFloat(name, value.x);
+            writeFloat(name, value.y);
+        }
+
+        @Override
+        public void writeVector3f(String name, Vector3f value) {
+            if (!present(value)) return;
+
+            writeFloat(name, value.x);
+            writeFloat(name, value.y);
+            writeFloat(name, value.z);
+        }
+
+        @Override
+        public void writeVector4f(String name, Vector4f value) {
+            if (!present(value)) return;
+
+            writeFloat(name, value.x);
+            writeFloat(name, value.y);
+            writeFloat(name, value.z);
+            writeFloat(name, value.w);
+        }
+
+        @Override
+        public void writeSprite(String name, Sprite value) {
+            if (!present(value)) return;
+
+            Texture texture = value.getTexture();
+            writeInt(name, texture == null || texture.getPath() == null ? -1 : assets.computeIfAbsent(texture.getPath(), p -> assets.size()));
+
+            Vector2f[] texCoords = value.getTexCoords();
+            writeInt(name, texCoords.length);
+            for (Vector2f texCoord : texCoords) writeVector2f(name, texCoord);
+
+            writeFloat(name, value.getWidth());
+            writeFloat(name, value.getHeight());
+        }
+
+        @Override
+        public void writeMask(String[] names, int mask) {
+            writeInt(null, mask);
+        }
+
+        // Objects are preceded by a flag, so null fields survive a round trip
+        private boolean present(Object value) {
+            writeBoolean(null, value != null);
+            return value != null;
+        }
+    }
+
+    private static class BinaryComponentReader implements ComponentReader {
+        private final ByteBuffer buffer;
+        private final String[] assets;
+        private final Texture[] textures;
+
+        private BinaryComponentReader(ByteBuffer buffer, String[] assets, Texture[] textures) {
+            this.buffer = buffer;
+            this.assets = assets;
+            this.textures = textures;
+        }
+
+        @Override
+        public boolean has(String name) {
+            return true;
+        }
+
+        @Override
+        public int readInt(String name) {
+            return buffer.getInt();
+        }
+
+        @Override
+        public float readFloat(String name) {
+            return buffer.getFloat();
+        }
+
+        @Override
+        public boolean readBoolean(String name) {
+            return buffer.get() != 0;
+        }
+
+        @Override
+        public String readString(String name) {
+            return present() ? BinarySceneFormat.readString(buffer) : null;
+        }
+
+        @Override
+        public Vector2f readVector2f(String name) {
+            return present() ? new Vector2f(buffer.getFloat(), buffer.getFloat()) : null;
+        }
+
+        @Override
+        public Vector3f readVector3f(String name) {
+            return present() ? new Vector3f(buffer.getFloat(), buffer.getFloat(), buffer.getFloat()) : null;
+        }
+
+        @Override
+        public Vector4f readVector4f(String name) {
+            return present() ? new Vector4f(buffer.getFloat(), buffer.getFloat(), buffer.getFloat(), buffer.getFloat()) : null;
+        }
+
+        @Override
+        public Sprite readSprite(String name) {
+            if (!present()) return null;
+
+            int asset = buffer.getInt();
+            Texture texture = null;
+            if (asset >= 0) {
+                if (textures[asset] == null) textures[asset] = AssetPool.getTexture(assets[asset]);
+                texture = textures[asset];
+            }
+
+            Vector2f[] texCoords = new Vector2f[buffer.getInt()];
+            for (int i = 0; i < texCoords.length; i++) texCoords[i] = readVector2f(name);
+
+            return new Sprite(texture, texCoords, buffer.getFloat(), buffer.getFloat());
+        }
+
+        @Override
+        public int readMask(String[] names) {
+            return buffer.getInt();
+        }
+
+        private boolean present() {
+            return buffer.get() != 0;
+        }
+    }
+
+    public record Bounds(int objects, float minX, float minY, float maxX, float maxY) {
+    }
+}
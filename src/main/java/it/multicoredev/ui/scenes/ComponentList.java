@@ -0,0 +1,70 @@
+package it.multicoredev.ui.scenes;
+
+import it.multicoredev.ui.components.Component;
+
+import java.util.*;
+
+/**
+ * BSD 3-Clause License
+ * <p>
+ * Copyright (c) 2022, Lorenzo Magni
+ * All rights reserved.
+ * <p>
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * <p>
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * <p>
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * <p>
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+// Every live component of a type, removal swaps the last element into the hole so the order is not kept
+class ComponentList {
+    private final List<Component> components = new ArrayList<>();
+    private final Map<Component, Integer> positions = new IdentityHashMap<>();
+    private final List<Component> view = Collections.unmodifiableList(components);
+
+    void add(Component component) {
+        if (positions.containsKey(component)) return;
+
+        positions.put(component, components.size());
+        components.add(component);
+    }
+
+    void remove(Component component) {
+        Integer position = positions.remove(component);
+        if (position == null) return;
+
+        Component last = components.remove(components.size() - 1);
+        if (last != component) {
+            components.set(position, last);
+            positions.put(last, position);
+        }
+    }
+
+    void clear() {
+        components.clear();
+        positions.clear();
+    }
+
+    List<Component> view() {
+        return view;
+    }
+}
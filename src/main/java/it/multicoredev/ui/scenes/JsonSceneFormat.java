@@ -0,0 +1,143 @@
+package it.multicoredev.ui.scenes;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import it.multicoredev.ui.GameObject;
+import it.multicoredev.ui.Prefabs;
+import it.multicoredev.utils.AssetPool;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static it.multicoredev.App.GSON;
+
+/**
+ * BSD 3-Clause License
+ * <p>
+ * Copyright (c) 2022, Lorenzo Magni
+ * All rights reserved.
+ * <p>
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * <p>
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * <p>
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * <p>
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+public class JsonSceneFormat implements SceneFormat {
+    public static final JsonSceneFormat INSTANCE = new JsonSceneFormat(false);
+    // One compact object per line, it can be appended to and split without parsing the whole file
+    public static final JsonSceneFormat LINES = new JsonSceneFormat(true);
+
+    private static final int CHUNK_SIZE = 256;
+
+    private final boolean lines;
+
+    private JsonSceneFormat(boolean lines) {
+        this.lines = lines;
+    }
+
+    @Override
+    public Snapshot snapshot(List<GameObject> objects) {
+        // The tree is the copy, turning it into text happens when the snapshot is written
+        JsonArray tree = GSON.toJsonTree(objects).getAsJsonArray();
+
+        return path -> {
+            try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+                if (!lines) {
+                    GSON.toJson(tree, writer);
+                    return;
+                }
+
+                for (JsonElement obj : tree) {
+                    writer.write(obj.toString());
+                    writer.newLine();
+                }
+            }
+        };
+    }
+
+    // Objects are parsed one at a time from the stream and decoded in chunks on the asset workers.
+    // At most a few chunks are in flight, so memory stays bounded however big the level is.
+    @Override
+    public List<GameObject> read(Path path) throws IOException {
+        int maxInFlight = Math.max(2, Runtime.getRuntime().availableProcessors() * 2);
+
+        List<GameObject> objects = new ArrayList<>();
+        Deque<CompletableFuture<List<GameObject>>> inFlight = new ArrayDeque<>();
+
+        try (JsonReader reader = new JsonReader(Files.newBufferedReader(path, StandardCharsets.UTF_8))) {
+            if (lines) reader.setLenient(true);
+            else reader.beginArray();
+
+            List<JsonElement> chunk = new ArrayList<>(CHUNK_SIZE);
+            while (reader.peek() != JsonToken.END_ARRAY && reader.peek() != JsonToken.END_DOCUMENT) {
+                JsonElement obj = JsonParser.parseReader(reader);
+                resolvePrefab(obj);
+                chunk.add(obj);
+                if (chunk.size() < CHUNK_SIZE) continue;
+
+                inFlight.add(decode(chunk));
+                chunk = new ArrayList<>(CHUNK_SIZE);
+
+                // Chunks are joined oldest first, this keeps the original order of the objects
+                if (inFlight.size() >= maxInFlight) objects.addAll(inFlight.poll().join());
+            }
+
+            if (!lines) reader.endArray();
+            if (!chunk.isEmpty()) inFlight.add(decode(chunk));
+        }
+
+        while (!inFlight.isEmpty()) objects.addAll(inFlight.poll().join());
+        return objects;
+    }
+
+    // Sprite prefabs load their sheet on first use and that waits on the GL thread.
+    // They are resolved here on the reading thread, so the workers only ever hit the cache.
+    private static void resolvePrefab(JsonElement obj) {
+        if (!obj.isJsonObject() || !obj.getAsJsonObject().has("prefab")) return;
+        Prefabs.get(obj.getAsJsonObject().get("prefab").getAsString());
+    }
+
+    // Streamed levels are read on a worker already, queueing behind other reads could starve the pool
+    private static CompletableFuture<List<GameObject>> decode(List<JsonElement> chunk) {
+        if (AssetPool.isWorkerThread()) return CompletableFuture.completedFuture(decodeChunk(chunk));
+        return CompletableFuture.supplyAsync(() -> decodeChunk(chunk), AssetPool.workers());
+    }
+
+    private static List<GameObject> decodeChunk(List<JsonElement> chunk) {
+        List<GameObject> objects = new ArrayList<>(chunk.size());
+        for (JsonElement obj : chunk) objects.add(GSON.fromJson(obj, GameObject.class));
+
+        return objects;
+    }
+}
@@ -6,6 +6,7 @@ import it.multicoredev.ui.Camera;
 import it.multicoredev.ui.GameObject;
 import it.multicoredev.ui.Prefabs;
 import it.multicoredev.ui.Transform;
+import it.multicoredev.ui.Window;
 import it.multicoredev.ui.components.MouseControls;
 import it.multicoredev.ui.components.Sprite;
 import it.multicoredev.ui.components.SpriteRenderer;
@@ -16,6 +17,8 @@ import it.multicoredev.utils.AssetPool;
 import org.joml.Vector2f;
 import org.joml.Vector4f;
 
+import java.io.IOException;
+
 import static it.multicoredev.App.LOGGER;
 
 /**
@@ -54,6 +57,7 @@ public class LevelEditorScene extends Scene {
     private SpriteSheet icons;
     private SpriteSheet pipes;
     MouseControls mouseControls = new MouseControls();
+    private SceneJournal journal;
 
     public LevelEditorScene() {
 
@@ -63,9 +67,11 @@ public class LevelEditorScene extends Scene {
     public void init() {
         camera = new Camera();
 
-        decorationsAndBlocks = AssetPool.getSpriteSheet(SpriteSheets.DECORATIONS_AND_BLOCKS);
-        icons = AssetPool.getSpriteSheet(SpriteSheets.ICONS);
-        pipes = AssetPool.getSpriteSheet(SpriteSheets.PIPES);
+        decorationsAndBlocks = acquireSpriteSheet(SpriteSheets.DECORATIONS_AND_BLOCKS);
+        icons = acquireSpriteSheet(SpriteSheets.ICONS);
+        pipes = acquireSpriteSheet(SpriteSheets.PIPES);
+
+        journal = SceneJournal.open(this, Scenes.LEVEL_EDITOR.getPath());
 
         if (loadedLevel) {
             //activeGameObject = getGameObject("goomba");
@@ -110,12 +116,14 @@ public class LevelEditorScene extends Scene {
             getGameObject("mario").getComponent(SpriteRenderer.class).setSprite(AssetPool.getSpriteSheet(SpriteSheets.SPRITESHEET).getSprite(spriteIndex));
         }*/
 
+        // The objects are updated by fixedUpdate and drawn by render, see Scene.frame
+        journal.update();
+    }
 
-        gameObjects.forEach(go -> go.update(dt));
-
-        renderer.render();
-
-        save(Scenes.LEVEL_EDITOR.getPath());
+    @Override
+    public void unload() {
+        journal.close();
+        super.unload();
     }
 
     @Override
@@ -139,7 +147,8 @@ public class LevelEditorScene extends Scene {
 
             ImGui.pushID(i);
             if (ImGui.imageButton(id, spriteWidth, spriteHeight, texCoords[2].x, texCoords[0].y, texCoords[0].x, texCoords[2].y)) {
-                GameObject obj = Prefabs.generateSpriteObject(sprite, spriteWidth, spriteHeight, 0);
+                Transform transform = new Transform(new Vector2f(), new Vector2f(spriteWidth, spriteHeight));
+                GameObject obj = Prefabs.sprite(SpriteSheets.DECORATIONS_AND_BLOCKS, i).instantiate(transform, 0);
 
                 // Attach object to mouse cursor
                 mouseControls.pickUpObject(obj);
@@ -154,6 +163,18 @@ public class LevelEditorScene extends Scene {
             if (i + 1 < decorationsAndBlocks.size() && nextButtonX2 < windowX2) ImGui.sameLine();
         }
 
+        // Builds the chunks the level scene streams from
+        if (ImGui.button("Export level")) {
+            try {
+                LevelStreamer.write(gameObjects, Scenes.LEVEL.getChunkDirectory());
+            } catch (IOException e) {
+                LOGGER.error("Error while exporting level", e);
+            }
+        }
+
         ImGui.end();
+
+        AssetPool.imgui();
+        Window.getClock().imgui();
     }
 }
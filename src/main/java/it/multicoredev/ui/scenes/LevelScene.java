@@ -1,5 +1,8 @@
 package it.multicoredev.ui.scenes;
 
+import it.multicoredev.ui.Camera;
+import it.multicoredev.ui.registries.Scenes;
+
 /**
  * BSD 3-Clause License
  * <p>
@@ -32,12 +35,43 @@ package it.multicoredev.ui.scenes;
  * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 public class LevelScene extends Scene {
+    private static final float SIMULATION_RATE = 60;
+    private LevelStreamer streamer;
 
     public LevelScene() {
     }
 
     @Override
-    public void update(float dt) {
+    public void init() {
+        camera = new Camera();
+        enableStorage();
+        setFixedRate(SIMULATION_RATE);
+        streamer = new LevelStreamer(this, Scenes.LEVEL.getChunkDirectory());
+    }
+
+    // The level is streamed by chunks around the camera instead of being loaded whole
+    @Override
+    public void load(String path) {
+        loadedLevel = true;
+    }
+
+    @Override
+    protected void fixedUpdate(float dt) {
+        gameObjects.forEach(go -> go.update(dt));
+        getPhysics().step(dt);
+        // Systems run on the storage arrays, their writes reach the objects before rendering
+        getSystems().update(dt);
+    }
+
+    @Override
+    protected void render(float alpha) {
+        streamer.update(camera);
+        renderer.render(alpha);
+    }
 
+    @Override
+    public void unload() {
+        streamer.close();
+        super.unload();
     }
 }
@@ -0,0 +1,273 @@
+package it.multicoredev.ui.scenes;
+
+import it.multicoredev.ui.Camera;
+import it.multicoredev.ui.GameObject;
+import it.multicoredev.ui.GameObjectPool;
+import it.multicoredev.utils.AssetPool;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+import static it.multicoredev.App.LOGGER;
+
+/**
+ * BSD 3-Clause License
+ * <p>
+ * Copyright (c) 2022, Lorenzo Magni
+ * All rights reserved.
+ * <p>
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * <p>
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * <p>
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * <p>
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+public class LevelStreamer {
+    public static final float CHUNK_SIZE = 32.0f * 16.0f;
+    private static final String EXTENSION = ".scene";
+
+    private final Scene scene;
+    private final Path directory;
+    private final float chunkSize;
+    private final Set<Long> available = new HashSet<>();
+    private final Map<Long, Chunk> chunks = new LinkedHashMap<>();
+
+    private float prefetchMargin;
+    private int addBudget = 64;
+
+    public LevelStreamer(Scene scene, String directory, float chunkSize) {
+        this.scene = scene;
+        this.directory = Path.of(directory);
+        this.chunkSize = chunkSize;
+        this.prefetchMargin = chunkSize;
+
+        // Only the file names are read here, chunks missing on disk are never requested
+        if (Files.isDirectory(this.directory)) {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(this.directory, "*" + EXTENSION)) {
+                for (Path file : files) {
+                    Long key = parseKey(file.getFileName().toString());
+                    if (key != null) available.add(key);
+                }
+            } catch (IOException e) {
+                LOGGER.error("Cannot list the chunks of '" + directory + "'", e);
+            }
+        }
+
+        LOGGER.info("Streaming " + available.size() + " chunks from '" + directory + "'");
+    }
+
+    public LevelStreamer(Scene scene, String directory) {
+        this(scene, directory, CHUNK_SIZE);
+    }
+
+    public void setPrefetchMargin(float prefetchMargin) {
+        this.prefetchMargin = prefetchMargin;
+    }
+
+    // Objects added to the scene per frame, the rest of a loaded chunk waits for the next frames
+    public void setAddBudget(int addBudget) {
+        this.addBudget = addBudget;
+    }
+
+    public int getLoadedChunks() {
+        return chunks.size();
+    }
+
+    // Call once per frame from the main thread
+    public void update(Camera camera) {
+        float minX = camera.position.x - prefetchMargin;
+        float minY = camera.position.y - prefetchMargin;
+        float maxX = camera.position.x + Camera.VIEWPORT_WIDTH + prefetchMargin;
+        float maxY = camera.position.y + Camera.VIEWPORT_HEIGHT + prefetchMargin;
+
+        int minCX = chunk(minX), minCY = chunk(minY);
+        int maxCX = chunk(maxX), maxCY = chunk(maxY);
+
+        for (int cx = minCX; cx <= maxCX; cx++) {
+            for (int cy = minCY; cy <= maxCY; cy++) {
+                long key = key(cx, cy);
+                if (available.contains(key) && !chunks.containsKey(key)) chunks.put(key, load(cx, cy));
+            }
+        }
+
+        // One extra chunk of slack, so moving back and forth on a border does not reload the same chunk
+        int keepMinX = minCX - 1, keepMinY = minCY - 1;
+        int keepMaxX = maxCX + 1, keepMaxY = maxCY + 1;
+
+        Iterator<Chunk> it = chunks.values().iterator();
+        while (it.hasNext()) {
+            Chunk chunk = it.next();
+            if (chunk.x >= keepMinX && chunk.x <= keepMaxX && chunk.y >= keepMinY && chunk.y <= keepMaxY) continue;
+            // Objects belong to the chunk they were loaded with, wherever they are now.
+            // A chunk stays while one of them sits in a cell that is kept, so nothing disappears in view
+            // and reloading the chunk cannot add a second copy of an object that is still around.
+            if (chunk.reaches(keepMinX, keepMinY, keepMaxX, keepMaxY)) continue;
+
+            unload(chunk);
+            it.remove();
+        }
+
+        int budget = addBudget;
+        for (Chunk chunk : chunks.values()) {
+            if (budget <= 0) break;
+            budget -= chunk.add(budget);
+        }
+    }
+
+    public void close() {
+        chunks.values().forEach(this::unload);
+        chunks.clear();
+    }
+
+    private Chunk load(int cx, int cy) {
+        Path file = directory.resolve(cx + "_" + cy + EXTENSION);
+        Chunk chunk = new Chunk(cx, cy);
+
+        // Completed by hand so that either the worker or unload gets the objects, never both and never none
+        CompletableFuture<List<GameObject>> load = new CompletableFuture<>();
+        chunk.load = load;
+        AssetPool.workers().execute(() -> {
+            try {
+                List<GameObject> objects = BinarySceneFormat.INSTANCE.read(file);
+                if (!load.complete(objects)) release(objects, 0);
+            } catch (IOException | RuntimeException e) {
+                if (!load.isCancelled()) LOGGER.error("Cannot load chunk '" + file + "'", e);
+                load.completeExceptionally(e);
+            }
+        });
+
+        return chunk;
+    }
+
+    private void unload(Chunk chunk) {
+        if (chunk.load.cancel(false) || chunk.load.isCompletedExceptionally()) return;
+
+        List<GameObject> objects = chunk.load.join();
+        if (chunk.added > 0) {
+            // Objects destroyed in the meantime may already be back in the pool and in use somewhere else
+            List<GameObject> alive = new ArrayList<>(chunk.added);
+            for (int i = 0; i < chunk.added; i++) {
+                if (GameObjectPool.isAlive(objects.get(i), chunk.handles[i])) alive.add(objects.get(i));
+            }
+            scene.removeGameObjects(alive);
+        }
+        // The rest was decoded but never reached the scene
+        release(objects, chunk.added);
+    }
+
+    private static void release(List<GameObject> objects, int from) {
+        for (int i = from; i < objects.size(); i++) GameObjectPool.release(objects.get(i));
+    }
+
+    private int chunk(float coord) {
+        return (int) Math.floor(coord / chunkSize);
+    }
+
+    private static long key(int cx, int cy) {
+        return ((long) cx << 32) | (cy & 0xFFFFFFFFL);
+    }
+
+    private static Long parseKey(String fileName) {
+        String[] coords = fileName.substring(0, fileName.length() - EXTENSION.length()).split("_");
+        if (coords.length != 2) return null;
+
+        try {
+            return key(Integer.parseInt(coords[0]), Integer.parseInt(coords[1]));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    // Splits the objects by the chunk their position falls in and replaces the chunks in the directory
+    public static void write(List<GameObject> objects, String directory, float chunkSize) throws IOException {
+        Map<String, List<GameObject>> split = new HashMap<>();
+        for (GameObject obj : objects) {
+            int cx = (int) Math.floor(obj.transform.position.x / chunkSize);
+            int cy = (int) Math.floor(obj.transform.position.y / chunkSize);
+            split.computeIfAbsent(cx + "_" + cy + EXTENSION, k -> new ArrayList<>()).add(obj);
+        }
+
+        Path dir = Path.of(directory);
+        Files.createDirectories(dir);
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*" + EXTENSION)) {
+            for (Path file : files) {
+                if (!split.containsKey(file.getFileName().toString())) Files.delete(file);
+            }
+        }
+
+        for (Map.Entry<String, List<GameObject>> entry : split.entrySet()) {
+            SceneFormat.write(BinarySceneFormat.INSTANCE.snapshot(entry.getValue()), dir.resolve(entry.getKey()));
+        }
+
+        LOGGER.info("Wrote " + objects.size() + " objects in " + split.size() + " chunks to '" + directory + "'");
+    }
+
+    public static void write(List<GameObject> objects, String directory) throws IOException {
+        write(objects, directory, CHUNK_SIZE);
+    }
+
+    private class Chunk {
+        private final int x;
+        private final int y;
+        private CompletableFuture<List<GameObject>> load;
+        private List<GameObject> objects;
+        private long[] handles;
+        private int added = 0;
+
+        private Chunk(int x, int y) {
+            this.x = x;
+            this.y = y;
+        }
+
+        private boolean reaches(int minX, int minY, int maxX, int maxY) {
+            for (int i = 0; i < added; i++) {
+                GameObject obj = objects.get(i);
+                if (!GameObjectPool.isAlive(obj, handles[i])) continue;
+
+                int cx = chunk(obj.transform.position.x), cy = chunk(obj.transform.position.y);
+                if (cx >= minX && cx <= maxX && cy >= minY && cy <= maxY) return true;
+            }
+
+            return false;
+        }
+
+        // Adds up to budget objects of a loaded chunk to the scene, returns how many were added
+        private int add(int budget) {
+            if (objects == null) {
+                if (!load.isDone() || load.isCompletedExceptionally()) return 0;
+                objects = load.join();
+                handles = new long[objects.size()];
+                for (int i = 0; i < handles.length; i++) handles[i] = objects.get(i).getHandle();
+            }
+
+            int count = Math.min(budget, objects.size() - added);
+            for (int i = 0; i < count; i++) scene.addGameObject(objects.get(added++));
+
+            return count;
+        }
+    }
+}
@@ -1,18 +1,26 @@
 package it.multicoredev.ui.scenes;
 
-import com.google.gson.reflect.TypeToken;
 import imgui.ImGui;
 import it.multicoredev.ui.Camera;
 import it.multicoredev.ui.GameObject;
+import it.multicoredev.ui.GameObjectPool;
+import it.multicoredev.ui.Transform;
 import it.multicoredev.ui.components.Component;
+import it.multicoredev.ui.components.ComponentPool;
+import it.multicoredev.ui.components.RigidBody;
+import it.multicoredev.ui.components.SpriteRenderer;
+import it.multicoredev.ui.components.SpriteSheet;
+import it.multicoredev.ui.ecs.ComponentTypes;
+import it.multicoredev.ui.ecs.EntityStorage;
+import it.multicoredev.ui.ecs.SystemScheduler;
+import it.multicoredev.ui.physics.PhysicsWorld;
 import it.multicoredev.ui.renderer.Renderer;
+import it.multicoredev.ui.renderer.Texture;
+import it.multicoredev.utils.AssetPool;
 
-import java.io.*;
-import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.file.Path;
+import java.util.*;
 
-import static it.multicoredev.App.GSON;
 import static it.multicoredev.App.LOGGER;
 
 /**
@@ -53,6 +61,29 @@ public abstract class Scene {
     private boolean isRunning = false;
     protected transient GameObject activeGameObject = null;
     protected transient boolean loadedLevel = false;
+    private final List<Texture> acquiredTextures = new ArrayList<>();
+    private SceneJournal journal = null;
+    private EntityStorage storage = null;
+    private SystemScheduler systems = null;
+    private final SceneCommands commands = new SceneCommands();
+    private final PhysicsWorld physics = new PhysicsWorld();
+
+    // Steps run at most in one frame, a slower frame lets the simulation fall behind instead of spiralling
+    public static final int MAX_STEPS_PER_FRAME = 5;
+    // Length of a simulation step in fixed timestep mode, 0 updates once per frame with the frame time
+    private float fixedStep = 0;
+    private float accumulator = 0;
+
+    private final Map<Integer, GameObject> byUid = new HashMap<>();
+    private final Map<String, Set<GameObject>> byName = new HashMap<>();
+    // Bounds of every object, fattened so that small moves do not touch the tree
+    private static final float TREE_MARGIN = 8;
+    private final AabbTree<GameObject> tree = new AabbTree<>(TREE_MARGIN);
+    private final PointPicker picker = new PointPicker();
+    private final RectFilter rectFilter = new RectFilter();
+    private boolean loading = false;
+    // Indexed by component type id, a component is listed under its class and every parent type
+    private final List<ComponentList> byType = new ArrayList<>();
 
     public void init() {
 
@@ -67,26 +98,347 @@ public abstract class Scene {
         isRunning = true;
     }
 
+    // Releases everything the scene holds, the assets stay cached in the AssetPool until evicted
+    public void unload() {
+        gameObjects.forEach(GameObject::destroy);
+        renderer.destroy();
+
+        acquiredTextures.forEach(AssetPool::releaseTexture);
+        acquiredTextures.clear();
+        isRunning = false;
+    }
+
+    // Sprite sheets used by the scene itself (palettes, UI) rather than by a GameObject
+    protected SpriteSheet acquireSpriteSheet(String path) {
+        SpriteSheet spriteSheet = AssetPool.getSpriteSheet(path);
+        if (spriteSheet != null) {
+            spriteSheet.getTexture().acquire();
+            acquiredTextures.add(spriteSheet.getTexture());
+        }
+
+        return spriteSheet;
+    }
+
     public void addGameObject(GameObject obj) {
         gameObjects.add(obj);
+        obj.setSceneIndex(gameObjects.size() - 1);
+        index(obj);
+        if (storage != null) storage.add(obj);
+        if (journal != null) journal.added(obj.getSceneIndex(), obj);
         if (isRunning) {
             obj.start();
             renderer.add(obj);
         }
     }
 
-    public abstract void update(float dt);
+    public void removeGameObject(GameObject obj) {
+        if (obj.getScene() != this) return;
+
+        int index = obj.getSceneIndex();
+        gameObjects.remove(index);
+        renumber(index);
+        unindex(obj);
+        if (storage != null) storage.remove(obj);
+        if (journal != null) journal.removed(index);
+        if (isRunning) renderer.remove(obj);
+        obj.destroy();
+        GameObjectPool.release(obj);
+    }
+
+    // Adds the component to an object of the scene, starting it and rendering it if the scene is running
+    public void addComponent(GameObject obj, Component component) {
+        obj.addComponent(component);
+        if (!isRunning || obj.getScene() != this) return;
+
+        component.start();
+        if (component instanceof SpriteRenderer) renderer.add(obj);
+    }
+
+    public void removeComponent(GameObject obj, Class<? extends Component> type) {
+        if (!obj.hasComponent(type)) return;
+
+        SpriteRenderer sprite = obj.getComponent(SpriteRenderer.class);
+        if (isRunning && type.isInstance(sprite)) renderer.remove(obj);
+
+        List<Component> removed = new ArrayList<>();
+        for (Component component : obj.getComponents()) {
+            if (type.isInstance(component)) removed.add(component);
+        }
+
+        obj.removeComponent(type);
+        removed.forEach(component -> {
+            component.destroy();
+            ComponentPool.release(component);
+        });
+    }
+
+    // Queue for the changes made while the objects are being updated, see sync
+    public SceneCommands commands() {
+        return commands;
+    }
+
+    // Applies the queued structural changes, called by the window between frames
+    public void sync() {
+        if (!commands.isEmpty()) commands.apply(this);
+    }
+
+    // Journal replay, runs before the scene starts and is not journaled again
+    void insertGameObject(int index, GameObject obj) {
+        gameObjects.add(index, obj);
+        renumber(index);
+        index(obj);
+        if (storage != null) storage.add(obj);
+    }
+
+    void removeGameObject(int index) {
+        GameObject obj = gameObjects.remove(index);
+        renumber(index);
+        unindex(obj);
+        if (storage != null) storage.remove(obj);
+    }
+
+    // Removes many objects with a single pass over the scene
+    public void removeGameObjects(Collection<GameObject> objects) {
+        Set<GameObject> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+        removed.addAll(objects);
+
+        int size = gameObjects.size();
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            GameObject obj = gameObjects.get(i);
+
+            if (!removed.contains(obj)) {
+                obj.setSceneIndex(kept);
+                gameObjects.set(kept++, obj);
+                continue;
+            }
+
+            unindex(obj);
+            if (storage != null) storage.remove(obj);
+            // The earlier removals already shifted the object down to index kept
+            if (journal != null) journal.removed(kept);
+            if (isRunning) renderer.remove(obj);
+            obj.destroy();
+            GameObjectPool.release(obj);
+        }
+
+        gameObjects.subList(kept, size).clear();
+    }
+
+    // Objects after a removal or insertion point moved, the shift already costs as much
+    private void renumber(int from) {
+        for (int i = from; i < gameObjects.size(); i++) gameObjects.get(i).setSceneIndex(i);
+    }
+
+    // Per frame work that does not simulate: input, editor tools, the journal. Runs once per frame in both modes.
+    public void update(float dt) {
+    }
+
+    // Simulation step, runs with the fixed step in fixed timestep mode and once per frame with the frame time otherwise
+    protected void fixedUpdate(float dt) {
+        gameObjects.forEach(obj -> obj.update(dt));
+    }
+
+    // Draws the scene, alpha is how far the frame is between the last two steps (1 without a fixed timestep)
+    protected void render(float alpha) {
+        renderer.render(alpha);
+    }
+
+    public void setFixedRate(float stepsPerSecond) {
+        fixedStep = stepsPerSecond > 0 ? 1 / stepsPerSecond : 0;
+        accumulator = 0;
+    }
+
+    public boolean isFixedStep() {
+        return fixedStep > 0;
+    }
+
+    // Called by the window once per frame with the frame time
+    public void frame(float dt) {
+        update(dt);
+        sync();
+
+        if (fixedStep <= 0) {
+            fixedUpdate(dt);
+            sync();
+            render(1);
+            return;
+        }
+
+        accumulator += dt;
+        int steps = 0;
+        while (accumulator >= fixedStep && steps < MAX_STEPS_PER_FRAME) {
+            gameObjects.forEach(GameObject::savePreviousTransform);
+            fixedUpdate(fixedStep);
+            sync();
+
+            accumulator -= fixedStep;
+            steps++;
+        }
+
+        // Drop what could not be simulated, a slow frame must not make the next ones slower
+        if (accumulator >= fixedStep) accumulator %= fixedStep;
+
+        render(accumulator / fixedStep);
+    }
 
     public Camera camera() {
         return camera;
     }
 
     public GameObject getGameObject(String name) {
-        for (GameObject obj : gameObjects) {
-            if (obj.getName().equals(name)) return obj;
+        GameObject obj = findGameObject(name);
+        if (obj == null) throw new IllegalArgumentException("GameObject not found");
+
+        return obj;
+    }
+
+    // Returns the first object added with the name, or null
+    public GameObject findGameObject(String name) {
+        Set<GameObject> objects = byName.get(name);
+        return objects == null ? null : objects.iterator().next();
+    }
+
+    public Collection<GameObject> getGameObjects(String name) {
+        Set<GameObject> objects = byName.get(name);
+        return objects == null ? Collections.emptyList() : Collections.unmodifiableCollection(objects);
+    }
+
+    public GameObject getGameObject(int uid) {
+        return byUid.get(uid);
+    }
+
+    // Live list of the components assignable to the type, it changes as objects and components are added and removed
+    @SuppressWarnings("unchecked")
+    public <T extends Component> List<T> getComponents(Class<T> type) {
+        return (List<T>) componentList(ComponentTypes.id(type)).view();
+    }
+
+    private void index(GameObject obj) {
+        obj.setScene(this);
+        Transform t = obj.transform;
+        // A load links all the leaves at once when it is done
+        if (loading) obj.setTreeProxy(tree.add(obj, t.position.x, t.position.y, t.position.x + t.scale.x, t.position.y + t.scale.y));
+        else obj.setTreeProxy(tree.insert(obj, t.position.x, t.position.y, t.position.x + t.scale.x, t.position.y + t.scale.y));
+        byUid.put(obj.getUid(), obj);
+        byName.computeIfAbsent(obj.getName(), name -> new LinkedHashSet<>()).add(obj);
+        obj.getComponents().forEach(this::componentAdded);
+    }
+
+    private void unindex(GameObject obj) {
+        obj.setScene(null);
+        if (obj.getTreeProxy() >= 0) tree.remove(obj.getTreeProxy());
+        obj.setTreeProxy(-1);
+        obj.setSceneIndex(-1);
+        // Removed objects go back to the pool, the inspector must not edit the next one to come out of it
+        if (activeGameObject == obj) activeGameObject = null;
+        byUid.remove(obj.getUid(), obj);
+
+        Set<GameObject> named = byName.get(obj.getName());
+        if (named != null && named.remove(obj) && named.isEmpty()) byName.remove(obj.getName());
+
+        obj.getComponents().forEach(this::componentRemoved);
+    }
+
+    private void clearIndices() {
+        gameObjects.forEach(obj -> {
+            obj.setScene(null);
+            obj.setTreeProxy(-1);
+            obj.setSceneIndex(-1);
+        });
+        tree.clear();
+        activeGameObject = null;
+        byUid.clear();
+        byName.clear();
+        byType.forEach(ComponentList::clear);
+    }
+
+    // Topmost object whose transform contains the point, in world coordinates
+    public GameObject pick(float x, float y) {
+        picker.x = x;
+        picker.y = y;
+        picker.picked = null;
+        tree.queryPoint(x, y, picker);
+
+        GameObject picked = picker.picked;
+        picker.picked = null;
+        return picked;
+    }
+
+    // Visits the objects whose transform overlaps the rectangle, until the visitor returns false
+    public void queryRect(float x0, float y0, float x1, float y1, AabbTree.Visitor<GameObject> visitor) {
+        rectFilter.set(x0, y0, x1, y1, visitor);
+        tree.queryRect(x0, y0, x1, y1, rectFilter);
+        rectFilter.visitor = null;
+    }
+
+    // The visitor gets the objects whose fattened bounds the segment crosses and does the exact test, see AabbTree.raycast
+    public void raycast(float x0, float y0, float x1, float y1, AabbTree.RayVisitor<GameObject> visitor) {
+        tree.raycast(x0, y0, x1, y1, visitor);
+    }
+
+    public void setActiveGameObject(GameObject obj) {
+        activeGameObject = obj;
+    }
+
+    public GameObject getActiveGameObject() {
+        return activeGameObject;
+    }
+
+    // The tree stores fattened bounds, the visitors below test the transforms themselves
+    private static boolean contains(GameObject obj, float x, float y) {
+        Transform t = obj.transform;
+        return x >= t.position.x && y >= t.position.y && x <= t.position.x + t.scale.x && y <= t.position.y + t.scale.y;
+    }
+
+    private static class PointPicker implements AabbTree.Visitor<GameObject> {
+        private float x;
+        private float y;
+        private GameObject picked;
+
+        @Override
+        public boolean visit(GameObject obj) {
+            if (contains(obj, x, y) && (picked == null || obj.zIndex() >= picked.zIndex())) picked = obj;
+            return true;
         }
+    }
+
+    private static class RectFilter implements AabbTree.Visitor<GameObject> {
+        private float x0;
+        private float y0;
+        private float x1;
+        private float y1;
+        private AabbTree.Visitor<GameObject> visitor;
+
+        private void set(float x0, float y0, float x1, float y1, AabbTree.Visitor<GameObject> visitor) {
+            this.x0 = x0;
+            this.y0 = y0;
+            this.x1 = x1;
+            this.y1 = y1;
+            this.visitor = visitor;
+        }
+
+        @Override
+        public boolean visit(GameObject obj) {
+            Transform t = obj.transform;
+            if (t.position.x > x1 || t.position.x + t.scale.x < x0 || t.position.y > y1 || t.position.y + t.scale.y < y0) return true;
+
+            return visitor.visit(obj);
+        }
+    }
+
+    // Called by the GameObjects of the scene when their components change
+    public void componentAdded(Component component) {
+        for (int id : ComponentTypes.ancestors(component.getClass())) componentList(id).add(component);
+    }
 
-        throw new IllegalArgumentException("GameObject not found");
+    public void componentRemoved(Component component) {
+        for (int id : ComponentTypes.ancestors(component.getClass())) componentList(id).remove(component);
+    }
+
+    private ComponentList componentList(int id) {
+        while (byType.size() <= id) byType.add(new ComponentList());
+        return byType.get(id);
     }
 
     public void sceneImgui() {
@@ -103,36 +455,106 @@ public abstract class Scene {
 
     }
 
+    // Called whenever the transform of an object changes, so the journal and the storage can record the edit
+    public void markDirty(GameObject obj) {
+        if (storage != null) storage.pull(obj);
+        if (obj.getScene() == this && obj.getTreeProxy() >= 0) {
+            Transform t = obj.transform;
+            tree.move(obj.getTreeProxy(), t.position.x, t.position.y, t.position.x + t.scale.x, t.position.y + t.scale.y);
+        }
+        // A sleeping body moved from outside the physics world has to be looked at again
+        RigidBody body = obj.getComponent(RigidBody.class);
+        if (body != null && body.isSleeping()) body.wake();
+        if (journal == null) return;
+
+        if (obj.getScene() == this) journal.transformChanged(obj.getSceneIndex(), obj.transform);
+    }
+
+    // Called whenever a saved field of a component changes
+    public void markDirty(Component component) {
+        if (storage != null && component.gameObject() != null) storage.pull(component.gameObject());
+        if (journal == null || component.gameObject() == null) return;
+
+        GameObject obj = component.gameObject();
+        if (obj.getScene() == this) journal.componentChanged(obj.getSceneIndex(), obj.getComponents().indexOf(component), component);
+    }
+
+    // Keeps a structure of arrays copy of the objects for systems that iterate the whole scene every frame
+    public void enableStorage() {
+        if (storage != null) return;
+
+        storage = new EntityStorage();
+        systems = new SystemScheduler(storage);
+        gameObjects.forEach(storage::add);
+    }
+
+    public EntityStorage getStorage() {
+        return storage;
+    }
+
+    // Stepped by the scenes that simulate, see LevelScene
+    public PhysicsWorld getPhysics() {
+        return physics;
+    }
+
+    // Null until the storage is enabled
+    public SystemScheduler getSystems() {
+        return systems;
+    }
+
+    void setJournal(SceneJournal journal) {
+        this.journal = journal;
+    }
+
+    public SceneFormat.Snapshot snapshot(SceneFormat format) {
+        return format.snapshot(gameObjects);
+    }
+
+    // The format is picked from the extension, .json for import and export and the binary format otherwise
     public void save(String path) {
-        try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(path), StandardCharsets.UTF_8))) {
-            writer.write(GSON.toJson(gameObjects));
+        try {
+            SceneFormat.write(snapshot(SceneFormat.forPath(path)), Path.of(path));
         } catch (Exception e) {
             LOGGER.error("Error while saving scene", e);
         }
     }
 
     public void load(String path) {
-        try (InputStreamReader reader = new InputStreamReader(new FileInputStream(path), StandardCharsets.UTF_8)) {
-            gameObjects.clear();
-            int maxGameObjectId = -1;
-            int maxComponentId = -1;
-
-            List<GameObject> objects = GSON.fromJson(reader, new TypeToken<List<GameObject>>() {}.getType());
-            for (GameObject obj : objects) {
-                addGameObject(obj);
+        try {
+            List<GameObject> objects = SceneFormat.forPath(path).read(Path.of(path));
 
-                if (obj.getUid() > maxGameObjectId) maxGameObjectId = obj.getUid();
-
-                for (Component component : obj.getComponents()) {
-                    if (component.getUid() > maxComponentId) maxComponentId = component.getUid();
-                }
+            if (storage != null) gameObjects.forEach(storage::remove);
+            clearIndices();
+            gameObjects.clear();
+            loading = true;
+            try {
+                objects.forEach(this::addGameObject);
+            } finally {
+                loading = false;
+                tree.rebuild();
             }
 
-            GameObject.init(maxGameObjectId + 1);
-            Component.init(maxComponentId + 1);
+            resetIds();
             loadedLevel = true;
         } catch (Exception e) {
             LOGGER.warn("Cannot load scene");
         }
     }
+
+    // Makes sure new objects and components do not reuse the ids of the loaded ones
+    void resetIds() {
+        int maxGameObjectId = -1;
+        int maxComponentId = -1;
+
+        for (GameObject obj : gameObjects) {
+            if (obj.getUid() > maxGameObjectId) maxGameObjectId = obj.getUid();
+
+            for (Component component : obj.getComponents()) {
+                if (component.getUid() > maxComponentId) maxComponentId = component.getUid();
+            }
+        }
+
+        GameObject.init(maxGameObjectId + 1);
+        Component.init(maxComponentId + 1);
+    }
 }
@@ -0,0 +1,122 @@
+package it.multicoredev.ui.scenes;
+
+import it.multicoredev.ui.GameObject;
+import it.multicoredev.ui.components.Component;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * BSD 3-Clause License
+ * <p>
+ * Copyright (c) 2022, Lorenzo Magni
+ * All rights reserved.
+ * <p>
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * <p>
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * <p>
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * <p>
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+// Structural changes queued while the scene is being updated and applied in order at the end of the frame.
+// Runs of destroys are applied together with a single pass over the scene.
+public class SceneCommands {
+    private static final byte SPAWN = 0;
+    private static final byte DESTROY = 1;
+    private static final byte ADD_COMPONENT = 2;
+    private static final byte REMOVE_COMPONENT = 3;
+
+    private byte[] types = new byte[256];
+    private GameObject[] targets = new GameObject[256];
+    private Object[] arguments = new Object[256];
+    private int size = 0;
+
+    private final Set<GameObject> destroyed = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    public void spawn(GameObject obj) {
+        push(SPAWN, obj, null);
+    }
+
+    public void destroy(GameObject obj) {
+        push(DESTROY, obj, null);
+    }
+
+    public void addComponent(GameObject obj, Component component) {
+        push(ADD_COMPONENT, obj, component);
+    }
+
+    public void removeComponent(GameObject obj, Class<? extends Component> type) {
+        push(REMOVE_COMPONENT, obj, type);
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    private void push(byte type, GameObject target, Object argument) {
+        if (size == types.length) {
+            types = Arrays.copyOf(types, size * 2);
+            targets = Arrays.copyOf(targets, size * 2);
+            arguments = Arrays.copyOf(arguments, size * 2);
+        }
+
+        types[size] = type;
+        targets[size] = target;
+        arguments[size] = argument;
+        size++;
+    }
+
+    @SuppressWarnings("unchecked")
+    void apply(Scene scene) {
+        // Commands can queue more commands, those run in the same pass
+        for (int i = 0; i < size; i++) {
+            byte type = types[i];
+            GameObject target = targets[i];
+
+            if (type == DESTROY) {
+                destroyed.add(target);
+                continue;
+            }
+            flushDestroyed(scene);
+
+            switch (type) {
+                case SPAWN -> scene.addGameObject(target);
+                case ADD_COMPONENT -> scene.addComponent(target, (Component) arguments[i]);
+                case REMOVE_COMPONENT -> scene.removeComponent(target, (Class<? extends Component>) arguments[i]);
+            }
+        }
+        flushDestroyed(scene);
+
+        Arrays.fill(targets, 0, size, null);
+        Arrays.fill(arguments, 0, size, null);
+        size = 0;
+    }
+
+    private void flushDestroyed(Scene scene) {
+        if (destroyed.isEmpty()) return;
+
+        scene.removeGameObjects(destroyed);
+        destroyed.clear();
+    }
+}
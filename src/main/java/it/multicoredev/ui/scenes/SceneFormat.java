@@ -0,0 +1,71 @@
+package it.multicoredev.ui.scenes;
+
+import it.multicoredev.ui.GameObject;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * BSD 3-Clause License
+ * <p>
+ * Copyright (c) 2022, Lorenzo Magni
+ * All rights reserved.
+ * <p>
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * <p>
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * <p>
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * <p>
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+public interface SceneFormat {
+
+    // Takes a consistent copy of the objects, must be called from the main thread. The snapshot can be written from any thread.
+    Snapshot snapshot(List<GameObject> objects);
+
+    List<GameObject> read(Path path) throws IOException;
+
+    static SceneFormat forPath(String path) {
+        if (path.endsWith(".json")) return JsonSceneFormat.INSTANCE;
+        if (path.endsWith(".ndjson")) return JsonSceneFormat.LINES;
+
+        return BinarySceneFormat.INSTANCE;
+    }
+
+    // Writes to a temporary file and renames it, so a crash never leaves a half written level behind
+    static void write(Snapshot snapshot, Path path) throws IOException {
+        if (path.getParent() != null) Files.createDirectories(path.getParent());
+
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        snapshot.write(tmp);
+        Files.move(tmp, path, REPLACE_EXISTING, ATOMIC_MOVE);
+    }
+
+    @FunctionalInterface
+    interface Snapshot {
+        void write(Path path) throws IOException;
+    }
+}
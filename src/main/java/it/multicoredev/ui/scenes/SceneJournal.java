@@ -0,0 +1,420 @@
+package it.multicoredev.ui.scenes;
+
+import it.multicoredev.ui.GameObject;
+import it.multicoredev.ui.Transform;
+import it.multicoredev.ui.components.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32C;
+
+import static it.multicoredev.App.GSON;
+import static it.multicoredev.App.LOGGER;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * BSD 3-Clause License
+ * <p>
+ * Copyright (c) 2022, Lorenzo Magni
+ * All rights reserved.
+ * <p>
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * <p>
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * <p>
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * <p>
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+public class SceneJournal {
+    private static final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "scene-journal");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final int MAGIC = 0x544A524E; // TJRN
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int CHECKSUM_BUFFER = 64 * 1024;
+
+    private static final byte ADDED = 0;
+    private static final byte REMOVED = 1;
+    private static final byte TRANSFORM = 2;
+    private static final byte COMPONENT = 3;
+
+    private final Scene scene;
+    private final Path snapshotPath;
+    private final Path path;
+    private final SceneFormat format;
+    private long compactThreshold = 256 * 1024;
+    private long flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(100);
+
+    // Main thread state, records are buffered for a short while and appended by the writer thread
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream record = new ByteArrayOutputStream();
+    private final DataOutputStream recordOut = new DataOutputStream(record);
+    private final Map<Integer, float[]> pendingTransforms = new LinkedHashMap<>();
+    private long size;
+    private long lastFlush = System.nanoTime();
+    private CompletableFuture<Void> compaction = CompletableFuture.completedFuture(null);
+
+    // Writer thread state
+    private FileChannel channel;
+
+    /*
+     * File layout: int magic, int version, long checksum of the snapshot the journal applies to, then the records.
+     * Record: int length, byte type, payload, int crc32c of type and payload.
+     *
+     *   ADDED:     int index, json of the GameObject
+     *   REMOVED:   int index
+     *   TRANSFORM: int index, float x, float y, float scale x, float scale y
+     *   COMPONENT: int index, int component, json of the Component
+     *
+     * Objects are referred to by their position in the scene, which replaying the records in order reproduces.
+     */
+
+    private SceneJournal(Scene scene, String snapshotPath) {
+        this.scene = scene;
+        this.snapshotPath = Path.of(snapshotPath);
+        this.path = Path.of(snapshotPath + ".journal");
+        this.format = SceneFormat.forPath(snapshotPath);
+    }
+
+    // Replays the edits made since the last snapshot onto the freshly loaded scene and starts recording new ones
+    public static SceneJournal open(Scene scene, String snapshotPath) {
+        SceneJournal journal = new SceneJournal(scene, snapshotPath);
+
+        try {
+            journal.size = journal.replay();
+            journal.channel = FileChannel.open(journal.path, WRITE);
+            journal.channel.truncate(journal.size);
+            journal.channel.position(journal.size);
+        } catch (IOException e) {
+            LOGGER.error("Cannot open scene journal '" + journal.path + "'", e);
+            throw new UncheckedIOException(e);
+        }
+
+        scene.setJournal(journal);
+        return journal;
+    }
+
+    public void setCompactThreshold(long bytes) {
+        compactThreshold = bytes;
+    }
+
+    public void setFlushInterval(long interval, TimeUnit unit) {
+        flushIntervalNanos = unit.toNanos(interval);
+    }
+
+    public long getSize() {
+        return size + pending.size();
+    }
+
+    public boolean isCompacting() {
+        return !compaction.isDone();
+    }
+
+    void added(int index, GameObject obj) {
+        beginRecord(ADDED);
+        writeInt(index);
+        writeJson(GSON.toJsonTree(obj).toString());
+        endRecord();
+    }
+
+    void removed(int index) {
+        beginRecord(REMOVED);
+        writeInt(index);
+        endRecord();
+    }
+
+    // Dragging an object changes its transform every frame, only the last value before a flush is recorded
+    void transformChanged(int index, Transform transform) {
+        pendingTransforms.put(index, new float[]{transform.position.x, transform.position.y, transform.scale.x, transform.scale.y});
+    }
+
+    void componentChanged(int index, int component, Component c) {
+        beginRecord(COMPONENT);
+        writeInt(index);
+        writeInt(component);
+        writeJson(GSON.toJsonTree(c, Component.class).toString());
+        endRecord();
+    }
+
+    // Call once per frame from the main thread
+    public void update() {
+        long now = System.nanoTime();
+        if (now - lastFlush >= flushIntervalNanos) flush();
+
+        if (getSize() > compactThreshold && compaction.isDone()) compact();
+    }
+
+    // Hands the buffered records to the writer thread
+    public void flush() {
+        lastFlush = System.nanoTime();
+        writeTransforms();
+        if (pending.size() == 0) return;
+
+        byte[] data = pending.toByteArray();
+        pending.reset();
+        size += data.length;
+
+        writer.execute(() -> append(data));
+    }
+
+    // Folds the journal into a new snapshot. Records made after this call go to the new journal.
+    public void compact() {
+        flush();
+
+        long start = System.nanoTime();
+        SceneFormat.Snapshot snapshot = scene.snapshot(format);
+        LOGGER.debug("Compacting '" + path + "' (" + size + " bytes, snapshot " + TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start) + " us)");
+
+        size = HEADER_SIZE;
+        compaction = CompletableFuture.runAsync(() -> {
+            try {
+                SceneFormat.write(snapshot, snapshotPath);
+                reset(checksum(snapshotPath));
+            } catch (IOException e) {
+                LOGGER.error("Error while compacting scene journal", e);
+                throw new UncheckedIOException(e);
+            }
+        }, writer);
+    }
+
+    // Saves everything and waits for the writer, the next open starts from a compacted snapshot
+    public void close() {
+        if (size > HEADER_SIZE || pending.size() > 0 || !pendingTransforms.isEmpty()) compact();
+
+        scene.setJournal(null);
+        CompletableFuture.runAsync(() -> {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                LOGGER.error("Error while closing scene journal", e);
+            }
+        }, writer).join();
+    }
+
+    private void writeTransforms() {
+        if (pendingTransforms.isEmpty()) return;
+
+        // Keep the map empty while the records are written, beginRecord would otherwise recurse
+        Map<Integer, float[]> transforms = new LinkedHashMap<>(pendingTransforms);
+        pendingTransforms.clear();
+
+        transforms.forEach((index, values) -> {
+            beginRecord(TRANSFORM);
+            writeInt(index);
+            for (float value : values) writeFloat(value);
+            endRecord();
+        });
+    }
+
+    private void beginRecord(byte type) {
+        // Transforms recorded earlier must come before a record that can move objects around
+        writeTransforms();
+
+        record.reset();
+        record.write(type);
+    }
+
+    private void endRecord() {
+        byte[] data = record.toByteArray();
+        CRC32C crc = new CRC32C();
+        crc.update(data);
+
+        ByteBuffer framed = ByteBuffer.allocate(data.length + 8);
+        framed.putInt(data.length).put(data).putInt((int) crc.getValue());
+        pending.writeBytes(framed.array());
+    }
+
+    private void writeInt(int value) {
+        try {
+            recordOut.writeInt(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeFloat(float value) {
+        try {
+            recordOut.writeFloat(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeJson(String json) {
+        record.writeBytes(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void append(byte[] data) {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            while (buffer.hasRemaining()) channel.write(buffer);
+        } catch (IOException e) {
+            LOGGER.error("Error while writing scene journal", e);
+        }
+    }
+
+    // Starts an empty journal for the given snapshot, replacing the old one atomically
+    private void reset(long snapshotChecksum) throws IOException {
+        if (path.getParent() != null) Files.createDirectories(path.getParent());
+
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.write(tmp, header(snapshotChecksum).array());
+        Files.move(tmp, path, REPLACE_EXISTING, ATOMIC_MOVE);
+
+        if (channel != null) channel.close();
+        channel = FileChannel.open(path, WRITE);
+        channel.position(HEADER_SIZE);
+    }
+
+    // Returns the length of the valid part of the journal
+    private long replay() throws IOException {
+        long snapshotChecksum = checksum(snapshotPath);
+
+        if (!Files.isRegularFile(path)) {
+            reset(snapshotChecksum);
+            return HEADER_SIZE;
+        }
+
+        try (FileChannel in = FileChannel.open(path, READ)) {
+            // Read instead of mapped, a live mapping would keep the journal from being replaced on Windows
+            if (in.size() > Integer.MAX_VALUE) throw new IOException("Scene journal too large: " + in.size() + " bytes");
+            ByteBuffer buffer = ByteBuffer.allocate((int) in.size());
+            while (buffer.hasRemaining()) {
+                if (in.read(buffer) < 0) break;
+            }
+            buffer.flip();
+
+            // A journal written for another snapshot was already folded into the current one
+            if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION || buffer.getLong(8) != snapshotChecksum) {
+                in.close();
+                reset(snapshotChecksum);
+                return HEADER_SIZE;
+            }
+
+            buffer.position(HEADER_SIZE);
+            int records = 0;
+            CRC32C crc = new CRC32C();
+
+            while (buffer.remaining() >= 4) {
+                int start = buffer.position();
+                int length = buffer.getInt();
+                if (length <= 0 || buffer.remaining() < length + 4) break;
+
+                ByteBuffer data = buffer.slice(buffer.position(), length);
+                crc.reset();
+                crc.update(data.duplicate());
+                if ((int) crc.getValue() != buffer.getInt(buffer.position() + length)) {
+                    // Torn write, the editor died while appending
+                    buffer.position(start);
+                    break;
+                }
+
+                try {
+                    apply(data);
+                } catch (RuntimeException e) {
+                    // A record that does not fit the scene ends the journal, the edits before it are kept
+                    LOGGER.error("Dropping scene journal from invalid record " + records + " of '" + path + "'", e);
+                    buffer.position(start);
+                    break;
+                }
+                buffer.position(buffer.position() + length + 4);
+                records++;
+            }
+
+            if (records > 0) {
+                scene.resetIds();
+                scene.loadedLevel = true;
+                LOGGER.info("Replayed " + records + " edits from '" + path + "'");
+            }
+
+            return buffer.position();
+        }
+    }
+
+    private void apply(ByteBuffer data) {
+        List<GameObject> objects = scene.gameObjects;
+        byte type = data.get();
+        int index = data.getInt();
+
+        switch (type) {
+            case ADDED -> scene.insertGameObject(index, GSON.fromJson(readJson(data), GameObject.class));
+            case REMOVED -> scene.removeGameObject(index);
+            case TRANSFORM -> {
+                GameObject obj = objects.get(index);
+                obj.transform.position.set(data.getFloat(), data.getFloat());
+                obj.transform.scale.set(data.getFloat(), data.getFloat());
+                // Refits the tree proxy and the storage row, the journal is not attached yet so nothing is recorded again
+                scene.markDirty(obj);
+            }
+            case COMPONENT -> {
+                GameObject obj = objects.get(index);
+                int component = data.getInt();
+                obj.setComponent(component, GSON.fromJson(readJson(data), Component.class));
+            }
+            default -> throw new IllegalStateException("Unknown journal record " + type);
+        }
+    }
+
+    private static String readJson(ByteBuffer data) {
+        byte[] bytes = new byte[data.remaining()];
+        data.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static ByteBuffer header(long snapshotChecksum) {
+        return ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION).putLong(snapshotChecksum).flip();
+    }
+
+    private static long checksum(Path file) throws IOException {
+        if (!Files.isRegularFile(file)) return 0;
+
+        try (FileChannel in = FileChannel.open(file, READ)) {
+            CRC32C crc = new CRC32C();
+            ByteBuffer buffer = ByteBuffer.allocateDirect(CHECKSUM_BUFFER);
+            while (in.read(buffer) >= 0) {
+                crc.update(buffer.flip());
+                buffer.clear();
+            }
+
+            return crc.getValue();
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package it.multicoredev.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * BSD 3-Clause License
+ * <p>
+ * Copyright (c) 2022, Lorenzo Magni
+ * All rights reserved.
+ * <p>
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * <p>
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * <p>
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * <p>
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+public class AssetPack {
+    // Layout
+    // ======
+    // Header   |   Magic   |   Version |   Entry count |   Index size
+    //          |   int     |   int     |   int         |   int
+    // Index    |   Key length  |   Key (UTF-8) |   Type    |   Offset  |   Length
+    //          |   short       |   byte[]      |   byte    |   long    |   long
+    // Entries, each one aligned to ENTRY_ALIGNMENT bytes
+    //   Shader         |   Source (UTF-8)
+    //   Texture        |   Width   |   Height  |   Channels    |   Padding |   Pixels (flipped vertically)
+    //                  |   int     |   int     |   int         |   int     |   byte[]
+    //   SpriteSheet    |   Sprite width    |   Sprite height   |   Sprites |   Spacing
+    //                  |   int             |   int             |   int     |   int
+    // ======
+    public static final String DEFAULT_PATH = "assets.pack";
+
+    static final int MAGIC = 0x544F4750; // TOGP
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 16;
+    static final int ENTRY_ALIGNMENT = 64;
+    static final int TEXTURE_HEADER_SIZE = 16;
+
+    static final byte SHADER = 0;
+    static final byte TEXTURE = 1;
+    static final byte SPRITE_SHEET = 2;
+
+    private final Path path;
+    private final MappedByteBuffer data;
+    private final Map<String, Entry> shaders = new HashMap<>();
+    private final Map<String, Entry> textures = new HashMap<>();
+    private final Map<String, Entry> spriteSheets = new HashMap<>();
+
+    private AssetPack(Path path, MappedByteBuffer data) {
+        this.path = path;
+        this.data = data;
+    }
+
+    public static AssetPack open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, READ)) {
+            // The mapping stays valid after the channel is closed
+            AssetPack pack = new AssetPack(path, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            pack.readIndex();
+            return pack;
+        }
+    }
+
+    private void readIndex() throws IOException {
+        if (data.capacity() < HEADER_SIZE || data.getInt(0) != MAGIC) throw new IOException("Not an asset pack: " + path);
+        if (data.getInt(4) != VERSION) throw new IOException("Unsupported asset pack version " + data.getInt(4) + ": " + path);
+
+        int count = data.getInt(8);
+        ByteBuffer index = data.slice(HEADER_SIZE, data.getInt(12));
+
+        for (int i = 0; i < count; i++) {
+            byte[] key = new byte[index.getShort()];
+            index.get(key);
+            byte type = index.get();
+            Entry entry = new Entry(index.getLong(), index.getLong());
+
+            if (entry.offset() + entry.length() > data.capacity()) throw new IOException("Truncated asset pack: " + path);
+
+            String name = new String(key, StandardCharsets.UTF_8);
+            switch (type) {
+                case SHADER -> shaders.put(name, entry);
+                case TEXTURE -> textures.put(name, entry);
+                case SPRITE_SHEET -> spriteSheets.put(name, entry);
+                default -> throw new IOException("Unknown asset type " + type + " for '" + name + "': " + path);
+            }
+        }
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public String getShader(String key) {
+        Entry entry = shaders.get(normalize(key));
+        if (entry == null) return null;
+
+        return StandardCharsets.UTF_8.decode(slice(entry)).toString();
+    }
+
+    public TextureData getTexture(String key) {
+        Entry entry = textures.get(normalize(key));
+        if (entry == null) return null;
+
+        ByteBuffer texture = slice(entry);
+        return new TextureData(
+                texture.getInt(0),
+                texture.getInt(4),
+                texture.getInt(8),
+                texture.slice(TEXTURE_HEADER_SIZE, (int) entry.length() - TEXTURE_HEADER_SIZE)
+        );
+    }
+
+    public SpriteSheetData getSpriteSheet(String key) {
+        Entry entry = spriteSheets.get(normalize(key));
+        if (entry == null) return null;
+
+        ByteBuffer sheet = slice(entry);
+        return new SpriteSheetData(sheet.getInt(0), sheet.getInt(4), sheet.getInt(8), sheet.getInt(12));
+    }
+
+    private ByteBuffer slice(Entry entry) {
+        return data.slice((int) entry.offset(), (int) entry.length());
+    }
+
+    // Keys are the same relative paths used by the registries, always with forward slashes
+    static String normalize(String key) {
+        return key.replace('\\', '/');
+    }
+
+    private record Entry(long offset, long length) {
+    }
+
+    public record TextureData(int width, int height, int channels, ByteBuffer pixels) {
+    }
+
+    public record SpriteSheetData(int spriteWidth, int spriteHeight, int numSprites, int spacing) {
+    }
+}
@@ -0,0 +1,176 @@
+package it.multicoredev.utils;
+
+import it.multicoredev.ui.registries.SpriteSheets;
+import org.lwjgl.BufferUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static it.multicoredev.App.LOGGER;
+import static it.multicoredev.utils.AssetPack.*;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.*;
+import static org.lwjgl.stb.STBImage.*;
+
+/**
+ * BSD 3-Clause License
+ * <p>
+ * Copyright (c) 2022, Lorenzo Magni
+ * All rights reserved.
+ * <p>
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * <p>
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * <p>
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * <p>
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+public class AssetPacker {
+    private final Path root;
+    private final List<PendingEntry> entries = new ArrayList<>();
+
+    // Keys are made relative to root, so they match the paths used by the registries
+    public AssetPacker(Path root) {
+        this.root = root.toAbsolutePath().normalize();
+    }
+
+    // Usage: AssetPacker [assets directory] [output file]
+    public static void main(String[] args) throws IOException {
+        Path assets = Path.of(args.length > 0 ? args[0] : "assets");
+        Path output = Path.of(args.length > 1 ? args[1] : DEFAULT_PATH);
+
+        AssetPacker packer = new AssetPacker(assets.toAbsolutePath().getParent());
+        packer.addShaders(assets.resolve("shaders"));
+        packer.addTextures(assets.resolve("textures"));
+        packer.addSpriteSheets(SpriteSheets.DEFINITIONS);
+        packer.write(output);
+    }
+
+    public void addShaders(Path dir) throws IOException {
+        for (Path file : list(dir, ".glsl")) {
+            entries.add(new PendingEntry(key(file), SHADER, ByteBuffer.wrap(Files.readAllBytes(file))));
+        }
+    }
+
+    public void addTextures(Path dir) throws IOException {
+        // Same orientation the runtime loader uses
+        stbi_set_flip_vertically_on_load(true);
+
+        for (Path file : list(dir, ".png")) {
+            IntBuffer width = BufferUtils.createIntBuffer(1);
+            IntBuffer height = BufferUtils.createIntBuffer(1);
+            IntBuffer channels = BufferUtils.createIntBuffer(1);
+
+            ByteBuffer pixels = stbi_load(file.toString(), width, height, channels, 0);
+            if (pixels == null) throw new IOException("Failed to decode texture '" + file + "': " + stbi_failure_reason());
+
+            ByteBuffer data = ByteBuffer.allocate(TEXTURE_HEADER_SIZE + pixels.remaining());
+            data.putInt(width.get(0)).putInt(height.get(0)).putInt(channels.get(0)).putInt(0);
+            data.put(pixels).flip();
+            stbi_image_free(pixels);
+
+            entries.add(new PendingEntry(key(file), TEXTURE, data));
+        }
+    }
+
+    public void addSpriteSheets(List<SpriteSheets.Definition> definitions) {
+        for (SpriteSheets.Definition def : definitions) {
+            ByteBuffer data = ByteBuffer.allocate(16)
+                    .putInt(def.spriteWidth())
+                    .putInt(def.spriteHeight())
+                    .putInt(def.numSprites())
+                    .putInt(def.spacing())
+                    .flip();
+
+            entries.add(new PendingEntry(normalize(def.path()), SPRITE_SHEET, data));
+        }
+    }
+
+    public void write(Path output) throws IOException {
+        List<byte[]> keys = new ArrayList<>();
+        int indexSize = 0;
+        for (PendingEntry entry : entries) {
+            byte[] key = entry.key().getBytes(StandardCharsets.UTF_8);
+            keys.add(key);
+            indexSize += Short.BYTES + key.length + Byte.BYTES + Long.BYTES * 2;
+        }
+
+        ByteBuffer head = ByteBuffer.allocate(HEADER_SIZE + indexSize);
+        head.putInt(MAGIC).putInt(VERSION).putInt(entries.size()).putInt(indexSize);
+
+        long offset = align(head.capacity());
+        for (int i = 0; i < entries.size(); i++) {
+            PendingEntry entry = entries.get(i);
+            head.putShort((short) keys.get(i).length).put(keys.get(i)).put(entry.type());
+            head.putLong(offset).putLong(entry.data().remaining());
+            offset = align(offset + entry.data().remaining());
+        }
+        head.flip();
+
+        Path tmp = output.resolveSibling(output.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, CREATE, WRITE, TRUNCATE_EXISTING)) {
+            writeFully(channel, head);
+
+            for (PendingEntry entry : entries) {
+                channel.position(align(channel.position()));
+                writeFully(channel, entry.data().duplicate());
+            }
+        }
+        Files.move(tmp, output, REPLACE_EXISTING, ATOMIC_MOVE);
+
+        LOGGER.info("Packed " + entries.size() + " assets into " + output);
+    }
+
+    private static List<Path> list(Path dir, String extension) throws IOException {
+        if (!Files.isDirectory(dir)) return List.of();
+
+        try (Stream<Path> files = Files.walk(dir)) {
+            return files.filter(Files::isRegularFile)
+                    .filter(file -> file.getFileName().toString().endsWith(extension))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private String key(Path file) {
+        return normalize(root.relativize(file.toAbsolutePath().normalize()).toString());
+    }
+
+    private static long align(long offset) {
+        return (offset + ENTRY_ALIGNMENT - 1) / ENTRY_ALIGNMENT * ENTRY_ALIGNMENT;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer data) throws IOException {
+        while (data.hasRemaining()) channel.write(data);
+    }
+
+    private record PendingEntry(String key, byte type, ByteBuffer data) {
+    }
+}
@@ -1,12 +1,23 @@
 package it.multicoredev.utils;
 
+import imgui.ImGui;
 import it.multicoredev.ui.components.SpriteSheet;
+import it.multicoredev.ui.registries.SpriteSheets;
+import it.multicoredev.ui.renderer.GLExecutor;
 import it.multicoredev.ui.renderer.Shader;
 import it.multicoredev.ui.renderer.Texture;
+import it.multicoredev.ui.renderer.TextureLoader;
 
 import java.io.File;
-import java.util.HashMap;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.io.UncheckedIOException;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static it.multicoredev.App.LOGGER;
 
@@ -42,31 +53,235 @@ import static it.multicoredev.App.LOGGER;
  * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 public class AssetPool {
-    private final static Map<String, Shader> shaders = new HashMap<>();
-    private final static Map<String, Texture> textures = new HashMap<>();
-    private final static Map<String, SpriteSheet> spriteSheets = new HashMap<>();
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+    private static final ThreadLocal<Boolean> WORKER = ThreadLocal.withInitial(() -> false);
+    private static final ExecutorService workers = Executors.newFixedThreadPool(Math.max(1, Runtime.getRuntime().availableProcessors() - 1), r -> {
+        Thread thread = new Thread(() -> {
+            WORKER.set(true);
+            r.run();
+        }, "asset-worker-" + THREAD_COUNTER.getAndIncrement());
+        thread.setDaemon(true);
+        return thread;
+    });
 
-    public static Shader getShader(String filePath) {
+    private final static Map<String, Shader> shaders = new ConcurrentHashMap<>();
+    private final static Map<String, Texture> textures = new ConcurrentHashMap<>();
+    private final static Map<String, SpriteSheet> spriteSheets = new ConcurrentHashMap<>();
+
+    // Loads in flight, so concurrent requests for the same asset share a single load
+    private final static Map<String, CompletableFuture<Shader>> shaderLoads = new ConcurrentHashMap<>();
+    private final static Map<String, CompletableFuture<Texture>> textureLoads = new ConcurrentHashMap<>();
+    private final static Map<String, CompletableFuture<SpriteSheet>> spriteSheetLoads = new ConcurrentHashMap<>();
+
+    private static volatile AssetPack pack = null;
+    private static long textureBudget = 256L * 1024 * 1024;
+    private static boolean overBudget = false;
+
+    public static Executor workers() {
+        return workers;
+    }
+
+    // The pool is bounded, a worker that waits on other worker tasks should run them itself
+    public static boolean isWorkerThread() {
+        return WORKER.get();
+    }
+
+    public static void shutdown() {
+        workers.shutdownNow();
+    }
+
+    public static void mountPack(String filePath) {
+        Path path = Path.of(filePath);
+        if (!Files.isRegularFile(path)) {
+            LOGGER.info("No asset pack found at '" + filePath + "', loading assets from files");
+            return;
+        }
+
+        try {
+            pack = AssetPack.open(path);
+            LOGGER.info("Mounted asset pack '" + filePath + "'");
+        } catch (IOException e) {
+            LOGGER.error("Cannot mount asset pack '" + filePath + "', loading assets from files", e);
+        }
+    }
+
+    // The source is read on a worker, the program is compiled and linked on the GL thread
+    public static CompletableFuture<Shader> loadShaderAsync(String filePath) {
         File file = new File(filePath);
-        if (shaders.containsKey(file.getPath())) {
-            return shaders.get(file.getPath());
-        } else {
-            Shader shader = new Shader(file);
-            shader.compileAndLink();
-            shaders.put(file.getPath(), shader);
-            return shader;
+        String key = file.getPath();
+
+        Shader loaded = shaders.get(key);
+        if (loaded != null) return CompletableFuture.completedFuture(loaded);
+
+        CompletableFuture<Shader> load = shaderLoads.computeIfAbsent(key, k -> shaders.containsKey(k)
+                ? CompletableFuture.completedFuture(shaders.get(k))
+                : CompletableFuture.supplyAsync(() -> readShader(file), workers)
+                .thenApplyAsync(src -> {
+                    Shader shader = new Shader(file, src);
+                    shader.compileAndLink();
+                    shaders.put(k, shader);
+                    return shader;
+                }, GLExecutor.get()));
+        load.whenComplete((shader, e) -> shaderLoads.remove(key, load));
+
+        return load;
+    }
+
+    public static Shader getShader(String filePath) {
+        return GLExecutor.await(loadShaderAsync(filePath));
+    }
+
+    private static String readShader(File file) {
+        String src = pack != null ? pack.getShader(file.getPath()) : null;
+        if (src != null) return src;
+
+        try {
+            return Files.readString(file.toPath());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open file for shaders: '" + file.getName() + "'", e);
         }
     }
 
-    public static Texture getTexture(String filePath) {
+    public static Shader acquireShader(String filePath) {
+        Shader shader = getShader(filePath);
+        shader.acquire();
+        return shader;
+    }
+
+    // Unreferenced shaders stay compiled until releaseUnusedShaders is called
+    public static void releaseShader(Shader shader) {
+        shader.release();
+    }
+
+    public static void releaseUnusedShaders() {
+        shaders.values().removeIf(shader -> {
+            if (shader.getReferences() > 0) return false;
+
+            shader.delete();
+            return true;
+        });
+    }
+
+    // Completes once the image is on the GPU. Evicted textures are loaded again into the same object.
+    public static CompletableFuture<Texture> loadTextureAsync(String filePath) {
         File file = new File(filePath);
-        if (textures.containsKey(file.getPath())) {
-            return textures.get(file.getPath());
-        } else {
-            Texture texture = new Texture(file);
-            textures.put(file.getPath(), texture);
-            return texture;
+        String key = file.getPath();
+        Texture texture = textures.computeIfAbsent(key, k -> new Texture());
+
+        // A file that failed to decode is not read again on every request
+        if (texture.isFailed()) return CompletableFuture.failedFuture(new IllegalStateException("Failed to load texture: " + key));
+
+        CompletableFuture<Texture> inFlight = textureLoads.get(key);
+        if (inFlight != null) return inFlight;
+        if (texture.isLoaded()) return CompletableFuture.completedFuture(texture);
+
+        CompletableFuture<Texture> load = textureLoads.computeIfAbsent(key, k -> texture.isLoaded()
+                ? CompletableFuture.completedFuture(texture)
+                : loadTexture(texture, file));
+        load.whenComplete((t, e) -> textureLoads.remove(key, load));
+
+        return load;
+    }
+
+    // Returns immediately, the texture shows a placeholder until its image is uploaded. The GL work is handed to the GL thread, so scene loaders can call it from any thread.
+    public static Texture getTexture(String filePath) {
+        loadTextureAsync(filePath);
+        return textures.get(new File(filePath).getPath());
+    }
+
+    public static Texture acquireTexture(String filePath) {
+        Texture texture = getTexture(filePath);
+        texture.acquire();
+        return texture;
+    }
+
+    public static void releaseTexture(Texture texture) {
+        texture.release();
+    }
+
+    private static CompletableFuture<Texture> loadTexture(Texture texture, File file) {
+        AssetPack.TextureData data = pack != null ? pack.getTexture(file.getPath()) : null;
+        return data != null
+                ? TextureLoader.load(texture, file, data.width(), data.height(), data.channels(), data.pixels())
+                : TextureLoader.load(texture, file);
+    }
+
+    public static boolean isLoading() {
+        return !shaderLoads.isEmpty() || !textureLoads.isEmpty() || !spriteSheetLoads.isEmpty();
+    }
+
+    public static long getTextureBudget() {
+        return textureBudget;
+    }
+
+    public static void setTextureBudget(long bytes) {
+        textureBudget = bytes;
+    }
+
+    public static long getTextureMemory() {
+        long total = 0;
+        for (Texture texture : textures.values()) total += texture.getSize();
+        return total;
+    }
+
+    // Deletes the least recently used unreferenced textures until the budget is met. Must be called from the GL thread.
+    public static void trim() {
+        long usage = 0;
+        boolean evictable = false;
+        for (Texture texture : textures.values()) {
+            usage += texture.getSize();
+            if (!evictable && isEvictable(texture)) evictable = true;
+        }
+
+        // Runs every frame, only sort when there is something to evict
+        if (usage > textureBudget && evictable) {
+            List<Texture> candidates = textures.values().stream()
+                    .filter(AssetPool::isEvictable)
+                    .sorted(Comparator.comparingLong(Texture::getLastUsed))
+                    .toList();
+
+            for (Texture texture : candidates) {
+                if (usage <= textureBudget) break;
+
+                usage -= texture.getSize();
+                LOGGER.info("Evicting texture '" + texture.getPath() + "' (" + formatSize(texture.getSize()) + ")");
+                texture.delete();
+            }
+        }
+
+        // Log when the state changes, not every frame it lasts
+        boolean over = usage > textureBudget;
+        if (over && !overBudget) {
+            LOGGER.warn("Referenced textures use " + formatSize(usage) + ", over the budget of " + formatSize(textureBudget));
+        } else if (!over && overBudget) {
+            LOGGER.info("Textures back under the budget of " + formatSize(textureBudget));
         }
+        overBudget = over;
+    }
+
+    private static boolean isEvictable(Texture texture) {
+        return texture.getReferences() == 0 && texture.isLoaded() && !textureLoads.containsKey(texture.getPath());
+    }
+
+    public static void imgui() {
+        ImGui.begin("Assets");
+
+        ImGui.text("Textures: " + formatSize(getTextureMemory()) + " / " + formatSize(textureBudget));
+        ImGui.separator();
+        textures.values().forEach(texture -> ImGui.text(texture.getPath() + "  " + formatSize(texture.getSize())
+                + "  refs: " + texture.getReferences() + (texture.isResident() ? "" : "  (evicted)")));
+
+        ImGui.separator();
+        ImGui.text("Shaders: " + shaders.size());
+        shaders.values().forEach(shader -> ImGui.text(shader.getPath() + "  refs: " + shader.getReferences()));
+
+        ImGui.end();
+    }
+
+    private static String formatSize(long bytes) {
+        if (bytes < 1024) return bytes + " B";
+        if (bytes < 1024 * 1024) return String.format("%.1f KiB", bytes / 1024f);
+        return String.format("%.1f MiB", bytes / (1024f * 1024f));
     }
 
     public static void addSpriteSheet(String filePath, SpriteSheet spriteSheet) {
@@ -77,10 +292,50 @@ public class AssetPool {
         }
     }
 
+    // Uses the metadata from the asset pack when present, the registry definition otherwise
+    public static CompletableFuture<SpriteSheet> loadSpriteSheetAsync(SpriteSheets.Definition def) {
+        File file = new File(def.path());
+        String key = file.getPath();
+
+        SpriteSheet loaded = spriteSheets.get(key);
+        if (loaded != null) return CompletableFuture.completedFuture(loaded);
+
+        CompletableFuture<SpriteSheet> load = spriteSheetLoads.computeIfAbsent(key, k -> {
+            if (spriteSheets.containsKey(k)) return CompletableFuture.completedFuture(spriteSheets.get(k));
+
+            AssetPack.SpriteSheetData data = pack != null ? pack.getSpriteSheet(k) : null;
+            SpriteSheets.Definition resolved = data == null ? def
+                    : new SpriteSheets.Definition(def.path(), data.spriteWidth(), data.spriteHeight(), data.numSprites(), data.spacing());
+
+            // The sprite sheet needs the texture size, so it is built once the texture is loaded
+            // A missing image leaves the sheet on the placeholder instead of failing the load
+            return loadTextureAsync(k).exceptionally(e -> {
+                LOGGER.error("Sprite sheet '" + k + "' has no texture, using a placeholder");
+                return textures.get(k);
+            }).thenApply(texture -> {
+                SpriteSheet spriteSheet = new SpriteSheet(texture, resolved.spriteWidth(), resolved.spriteHeight(), resolved.numSprites(), resolved.spacing());
+                SpriteSheet previous = spriteSheets.putIfAbsent(k, spriteSheet);
+                return previous != null ? previous : spriteSheet;
+            });
+        });
+        load.whenComplete((spriteSheet, e) -> spriteSheetLoads.remove(key, load));
+
+        return load;
+    }
+
+    public static SpriteSheet loadSpriteSheet(SpriteSheets.Definition def) {
+        return GLExecutor.await(loadSpriteSheetAsync(def));
+    }
+
     public static SpriteSheet getSpriteSheet(String filePath) {
         File file = new File(filePath);
         if (spriteSheets.containsKey(file.getPath())) {
             return spriteSheets.get(file.getPath());
+        }
+
+        AssetPack.SpriteSheetData data = pack != null ? pack.getSpriteSheet(file.getPath()) : null;
+        if (data != null) {
+            return loadSpriteSheet(new SpriteSheets.Definition(file.getPath(), data.spriteWidth(), data.spriteHeight(), data.numSprites(), data.spacing()));
         } else {
             LOGGER.error("SpriteSheet not found: " + file.getPath());
             return null;
@@ -0,0 +1,86 @@
+package it.multicoredev.ui.physics;
+
+import it.multicoredev.ui.components.RigidBody;
+
+import java.util.Random;
+
+import static it.multicoredev.App.LOGGER;
+
+/**
+ * BSD 3-Clause License
+ * <p>
+ * Copyright (c) 2022, Lorenzo Magni
+ * All rights reserved.
+ * <p>
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * <p>
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * <p>
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * <p>
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+// Times the contact search of the physics world on scenes of 10k to 100k bodies with the same density, without gravity:
+// a crowd with a quarter of static boxes and the rest moving, and a level with nine static boxes out of ten.
+public class PhysicsBenchmark {
+    private static final int[] SIZES = {10_000, 25_000, 50_000, 100_000};
+    private static final int WARMUP_STEPS = 50;
+    private static final int STEPS = 200;
+    private static final float DT = 1 / 60f;
+
+    public static void main(String[] args) {
+        for (int size : SIZES) run("crowd", size, 0.25f);
+        for (int size : SIZES) run("level", size, 0.9f);
+    }
+
+    private static void run(String name, int size, float staticFraction) {
+        Random random = new Random(size);
+        PhysicsWorld world = new PhysicsWorld();
+        world.setGravity(0, 0);
+
+        float side = (float) Math.sqrt(size) * 64;
+        for (int i = 0; i < size; i++) {
+            boolean isStatic = random.nextFloat() < staticFraction;
+            int type = isStatic ? RigidBody.BOX | RigidBody.STATIC : (i % 2 == 0 ? RigidBody.CIRCLE : RigidBody.BOX);
+            float width = 16 + random.nextFloat() * 16;
+            float height = type == RigidBody.CIRCLE ? width : 16 + random.nextFloat() * 16;
+
+            int body = world.add(type, random.nextFloat() * side, random.nextFloat() * side, width, height, 0.5f);
+            if ((type & RigidBody.STATIC) == 0) world.setVelocity(body, random.nextFloat() * 100 - 50, random.nextFloat() * 100 - 50);
+        }
+
+        for (int i = 0; i < WARMUP_STEPS; i++) world.step(DT);
+
+        long broadphase = 0;
+        long pairs = 0;
+        long contacts = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < STEPS; i++) {
+            world.step(DT);
+            broadphase += world.getBroadphaseNanos();
+            pairs += world.getPairCount();
+            contacts += world.getContactCount();
+        }
+        long total = System.nanoTime() - start;
+
+        LOGGER.info(String.format("%s, %d bodies: step %.3f ms, contacts search %.3f ms, %d pairs, %d contacts per step",
+                name, size, total / 1e6 / STEPS, broadphase / 1e6 / STEPS, pairs / STEPS, contacts / STEPS));
+    }
+}
@@ -0,0 +1,121 @@
+package it.multicoredev.ui.physics;
+
+import it.multicoredev.ui.GameObject;
+import it.multicoredev.ui.Transform;
+import it.multicoredev.ui.components.RigidBody;
+import org.joml.Vector2f;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * BSD 3-Clause License
+ * <p>
+ * Copyright (c) 2022, Lorenzo Magni
+ * All rights reserved.
+ * <p>
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * <p>
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * <p>
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * <p>
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+public class PhysicsWorldTest {
+    private static final float DT = 1 / 60f;
+    private static final float SIZE = 32;
+
+    private final PhysicsWorld world = new PhysicsWorld();
+
+    @Test
+    public void overlappingBoxesArePushedApart() {
+        world.setGravity(0, 0);
+        RigidBody a = box(0, 0);
+        RigidBody b = box(20, 0);
+
+        world.step(DT);
+        assertEquals(1, world.getContactCount());
+
+        for (int i = 0; i < 60; i++) world.step(DT);
+        float overlap = SIZE - (position(b).x - position(a).x);
+        assertTrue(overlap < 1, "Boxes still overlap by " + overlap);
+    }
+
+    @Test
+    public void distantBoxesDoNotTouch() {
+        world.setGravity(0, 0);
+        box(0, 0);
+        box(200, 0);
+
+        world.step(DT);
+        assertEquals(0, world.getContactCount());
+    }
+
+    @Test
+    public void restingBodyFallsAsleep() {
+        ground();
+        RigidBody body = box(0, 0);
+
+        for (int i = 0; i < 120; i++) world.step(DT);
+        assertTrue(body.isSleeping(), "Body resting on the ground is still awake");
+        assertEquals(0, position(body).y, 1);
+
+        // Sleeping bodies keep their place until something wakes them
+        float y = position(body).y;
+        world.step(DT);
+        assertEquals(y, position(body).y, 0);
+
+        body.setVelocity(0, 100);
+        assertFalse(body.isSleeping());
+        world.step(DT);
+        assertTrue(position(body).y > 0, "Woken body did not move");
+    }
+
+    @Test
+    public void fallingBodyStaysAwake() {
+        RigidBody body = box(0, 0);
+
+        for (int i = 0; i < 120; i++) world.step(DT);
+        assertFalse(body.isSleeping());
+        assertTrue(position(body).y < -100, "Body did not fall");
+    }
+
+    // Static ground with its top at y = 0
+    private void ground() {
+        world.add(RigidBody.BOX | RigidBody.STATIC, 0, -SIZE / 2, 1000, SIZE, 0.8f);
+    }
+
+    private RigidBody box(float x, float y) {
+        GameObject obj = new GameObject("box", new Transform(new Vector2f(x, y), new Vector2f(SIZE, SIZE)));
+        RigidBody body = new RigidBody();
+        obj.addComponent(body);
+
+        world.add(body);
+        body.setVelocity(0, 0);
+        return body;
+    }
+
+    private static Vector2f position(RigidBody body) {
+        return body.gameObject().transform.position;
+    }
+}
@@ -0,0 +1,156 @@
+package it.multicoredev.ui.scenes;
+
+import java.util.Random;
+
+import static it.multicoredev.App.LOGGER;
+
+/**
+ * BSD 3-Clause License
+ * <p>
+ * Copyright (c) 2022, Lorenzo Magni
+ * All rights reserved.
+ * <p>
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * <p>
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * <p>
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * <p>
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+public class AabbTreeBenchmark {
+    private static final int[] SIZES = {50_000, 500_000};
+    private static final float SIDE = 20_000;
+    private static final float BOX = 32;
+    private static final int QUERIES = 100_000;
+    private static final int RECT_QUERIES = 10_000;
+    private static final float RECT = 500;
+
+    public static void main(String[] args) {
+        for (int size : SIZES) run(size);
+    }
+
+    private static void run(int size) {
+        Random random = new Random(size);
+        AabbTree<Integer> tree = new AabbTree<>(8);
+        float[] boxes = new float[size * 2];
+        int[] proxies = new int[size];
+
+        // Half inserted one by one, half added and linked by a rebuild, then the rebuild takes all of them
+        long start = System.nanoTime();
+        for (int i = 0; i < size / 2; i++) proxies[i] = tree.insert(i, place(boxes, i, random), boxes[i * 2 + 1], boxes[i * 2] + BOX, boxes[i * 2 + 1] + BOX);
+        long insert = System.nanoTime() - start;
+        tree.validate();
+
+        start = System.nanoTime();
+        for (int i = size / 2; i < size; i++) proxies[i] = tree.add(i, place(boxes, i, random), boxes[i * 2 + 1], boxes[i * 2] + BOX, boxes[i * 2 + 1] + BOX);
+        tree.rebuild();
+        long rebuild = System.nanoTime() - start;
+        tree.validate();
+
+        // A third removed and a third moved by up to 20 px, most of them inside their fattened box
+        start = System.nanoTime();
+        for (int i = 0; i < size; i += 3) {
+            tree.remove(proxies[i]);
+            proxies[i] = -1;
+        }
+        for (int i = 1; i < size; i += 3) {
+            float x = boxes[i * 2] += random.nextFloat() * 40 - 20;
+            float y = boxes[i * 2 + 1] += random.nextFloat() * 40 - 20;
+            tree.move(proxies[i], x, y, x + BOX, y + BOX);
+        }
+        long update = System.nanoTime() - start;
+        tree.validate();
+
+        // The results are checked against a brute force search in AabbTreeTest
+        PointCounter counter = new PointCounter(boxes);
+        start = System.nanoTime();
+        for (int i = 0; i < QUERIES; i++) {
+            counter.set(random.nextFloat() * SIDE, random.nextFloat() * SIDE);
+            tree.queryPoint(counter.x, counter.y, counter);
+        }
+        long point = System.nanoTime() - start;
+
+        RectCounter rects = new RectCounter();
+        start = System.nanoTime();
+        for (int i = 0; i < RECT_QUERIES; i++) {
+            float x = random.nextFloat() * (SIDE - RECT);
+            float y = random.nextFloat() * (SIDE - RECT);
+            tree.queryRect(x, y, x + RECT, y + RECT, rects);
+        }
+        long rect = System.nanoTime() - start;
+
+        AabbTree.RayVisitor<Integer> ignore = (item, maxFraction) -> -1;
+        start = System.nanoTime();
+        for (int i = 0; i < RECT_QUERIES; i++) {
+            float x = random.nextFloat() * SIDE;
+            float y = random.nextFloat() * SIDE;
+            tree.raycast(x, y, x + 300, y + 200, ignore);
+        }
+        long ray = System.nanoTime() - start;
+
+        LOGGER.info(String.format("%d boxes: insert %.3f us, rebuild %.1f ms, remove and move %.1f ms, point %.3f us, rect %.3f us (%d hits), ray %.3f us",
+                size, insert / 1e3 / (size / 2), rebuild / 1e6, update / 1e6, point / 1e3 / QUERIES,
+                rect / 1e3 / RECT_QUERIES, rects.hits / RECT_QUERIES, ray / 1e3 / RECT_QUERIES));
+    }
+
+    private static float place(float[] boxes, int i, Random random) {
+        boxes[i * 2] = random.nextFloat() * SIDE;
+        boxes[i * 2 + 1] = random.nextFloat() * SIDE;
+        return boxes[i * 2];
+    }
+
+    private static class PointCounter implements AabbTree.Visitor<Integer> {
+        private final float[] boxes;
+        private float x;
+        private float y;
+        private int hits;
+
+        private PointCounter(float[] boxes) {
+            this.boxes = boxes;
+        }
+
+        private void set(float x, float y) {
+            this.x = x;
+            this.y = y;
+            hits = 0;
+        }
+
+        private boolean contains(int i) {
+            return x >= boxes[i * 2] && y >= boxes[i * 2 + 1] && x <= boxes[i * 2] + BOX && y <= boxes[i * 2 + 1] + BOX;
+        }
+
+        @Override
+        public boolean visit(Integer item) {
+            if (contains(item)) hits++;
+            return true;
+        }
+    }
+
+    private static class RectCounter implements AabbTree.Visitor<Integer> {
+        private long hits;
+
+        @Override
+        public boolean visit(Integer item) {
+            hits++;
+            return true;
+        }
+    }
+}
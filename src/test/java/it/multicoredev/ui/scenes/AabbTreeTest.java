@@ -0,0 +1,216 @@
+package it.multicoredev.ui.scenes;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * BSD 3-Clause License
+ * <p>
+ * Copyright (c) 2022, Lorenzo Magni
+ * All rights reserved.
+ * <p>
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * <p>
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * <p>
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * <p>
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * <p>
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+public class AabbTreeTest {
+    private static final int SIZE = 2_000;
+    private static final float SIDE = 2_000;
+    private static final float BOX = 32;
+    private static final int QUERIES = 200;
+
+    private final Random random = new Random(42);
+    private final AabbTree<Integer> tree = new AabbTree<>(8);
+    private final float[] boxes = new float[SIZE * 2];
+    private final int[] proxies = new int[SIZE];
+
+    @Test
+    public void insert() {
+        for (int i = 0; i < SIZE; i++) proxies[i] = insert(i);
+
+        tree.validate();
+        assertEquals(SIZE, tree.size());
+        checkQueries();
+    }
+
+    @Test
+    public void rebuild() {
+        for (int i = 0; i < SIZE / 2; i++) proxies[i] = insert(i);
+        for (int i = SIZE / 2; i < SIZE; i++) {
+            place(i);
+            proxies[i] = tree.add(i, boxes[i * 2], boxes[i * 2 + 1], boxes[i * 2] + BOX, boxes[i * 2 + 1] + BOX);
+        }
+        tree.rebuild();
+
+        tree.validate();
+        assertEquals(SIZE, tree.size());
+        checkQueries();
+
+        // Inserting into a rebuilt tree keeps it valid
+        tree.remove(proxies[0]);
+        proxies[0] = insert(0);
+        tree.validate();
+        checkQueries();
+    }
+
+    @Test
+    public void remove() {
+        for (int i = 0; i < SIZE; i++) proxies[i] = insert(i);
+        for (int i = 0; i < SIZE; i += 3) {
+            tree.remove(proxies[i]);
+            proxies[i] = -1;
+        }
+
+        tree.validate();
+        assertEquals(SIZE - (SIZE + 2) / 3, tree.size());
+        checkQueries();
+
+        for (int i = 0; i < SIZE; i++) {
+            if (proxies[i] >= 0) tree.remove(proxies[i]);
+            proxies[i] = -1;
+        }
+        tree.validate();
+        assertEquals(0, tree.size());
+        checkQueries();
+    }
+
+    @Test
+    public void move() {
+        for (int i = 0; i < SIZE; i++) proxies[i] = insert(i);
+
+        // Small moves stay inside the fattened box, the others go back into the tree
+        assertFalse(tree.move(proxies[0], boxes[0] + 1, boxes[1] + 1, boxes[0] + 1 + BOX, boxes[1] + 1 + BOX));
+        boxes[0] += 1;
+        boxes[1] += 1;
+
+        int moved = 0;
+        for (int i = 1; i < SIZE; i++) {
+            float distance = i % 2 == 0 ? 4 : 200;
+            float x = boxes[i * 2] += random.nextFloat() * distance * 2 - distance;
+            float y = boxes[i * 2 + 1] += random.nextFloat() * distance * 2 - distance;
+            if (tree.move(proxies[i], x, y, x + BOX, y + BOX)) moved++;
+        }
+
+        assertTrue(moved > 0);
+        tree.validate();
+        checkQueries();
+    }
+
+    @Test
+    public void raycast() {
+        for (int i = 0; i < SIZE; i++) proxies[i] = insert(i);
+
+        for (int q = 0; q < QUERIES; q++) {
+            float x0 = random.nextFloat() * SIDE, y0 = random.nextFloat() * SIDE;
+            float x1 = random.nextFloat() * SIDE, y1 = random.nextFloat() * SIDE;
+
+            // Every box the segment crosses has to be visited, the tree may visit a few more through the margin
+            Set<Integer> visited = new HashSet<>();
+            tree.raycast(x0, y0, x1, y1, (item, maxFraction) -> {
+                assertTrue(visited.add(item), "Item " + item + " visited twice");
+                return -1;
+            });
+
+            for (int i = 0; i < SIZE; i++) {
+                if (crosses(i, x0, y0, x1, y1)) assertTrue(visited.contains(i), "Ray missed item " + i);
+            }
+        }
+    }
+
+    private void checkQueries() {
+        for (int q = 0; q < QUERIES; q++) {
+            float x = random.nextFloat() * SIDE, y = random.nextFloat() * SIDE;
+            assertEquals(bruteForce(x, y, x, y), query(x, y, x, y), "Point query at " + x + ", " + y);
+
+            float size = random.nextFloat() * 300;
+            assertEquals(bruteForce(x, y, x + size, y + size), query(x, y, x + size, y + size), "Rect query at " + x + ", " + y);
+        }
+    }
+
+    // The tree reports the items whose fattened box overlaps, only the exact overlaps are kept
+    private Set<Integer> query(float x0, float y0, float x1, float y1) {
+        Set<Integer> visited = new HashSet<>();
+        Set<Integer> found = new HashSet<>();
+        tree.queryRect(x0, y0, x1, y1, item -> {
+            assertTrue(visited.add(item), "Item " + item + " visited twice");
+            if (overlaps(item, x0, y0, x1, y1)) found.add(item);
+            return true;
+        });
+
+        return found;
+    }
+
+    private Set<Integer> bruteForce(float x0, float y0, float x1, float y1) {
+        Set<Integer> found = new HashSet<>();
+        for (int i = 0; i < SIZE; i++) {
+            if (proxies[i] >= 0 && overlaps(i, x0, y0, x1, y1)) found.add(i);
+        }
+
+        return found;
+    }
+
+    private boolean overlaps(int i, float x0, float y0, float x1, float y1) {
+        return boxes[i * 2] <= x1 && boxes[i * 2] + BOX >= x0 && boxes[i * 2 + 1] <= y1 && boxes[i * 2 + 1] + BOX >= y0;
+    }
+
+    // Slab test of the segment against the exact box
+    private boolean crosses(int i, float x0, float y0, float x1, float y1) {
+        float tMin = 0, tMax = 1;
+        float[] origin = {x0, y0};
+        float[] direction = {x1 - x0, y1 - y0};
+
+        for (int axis = 0; axis < 2; axis++) {
+            float min = boxes[i * 2 + axis], max = min + BOX;
+            if (direction[axis] == 0) {
+                if (origin[axis] < min || origin[axis] > max) return false;
+                continue;
+            }
+
+            float t0 = (min - origin[axis]) / direction[axis];
+            float t1 = (max - origin[axis]) / direction[axis];
+            tMin = Math.max(tMin, Math.min(t0, t1));
+            tMax = Math.min(tMax, Math.max(t0, t1));
+            if (tMin > tMax) return false;
+        }
+
+        return true;
+    }
+
+    private int insert(int i) {
+        place(i);
+        return tree.insert(i, boxes[i * 2], boxes[i * 2 + 1], boxes[i * 2] + BOX, boxes[i * 2 + 1] + BOX);
+    }
+
+    private void place(int i) {
+        boxes[i * 2] = random.nextFloat() * SIDE;
+        boxes[i * 2 + 1] = random.nextFloat() * SIDE;
+    }
+}